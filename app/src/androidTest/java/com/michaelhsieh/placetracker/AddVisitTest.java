@@ -19,12 +19,15 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.LargeTest;
 import androidx.test.rule.ActivityTestRule;
 
+import static androidx.test.espresso.Espresso.onData;
 import static androidx.test.espresso.Espresso.onView;
 import static androidx.test.espresso.action.ViewActions.click;
 import static androidx.test.espresso.action.ViewActions.closeSoftKeyboard;
-import static androidx.test.espresso.action.ViewActions.replaceText;
 import static androidx.test.espresso.action.ViewActions.scrollTo;
-import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static androidx.test.espresso.action.ViewActions.typeText;
+import static androidx.test.espresso.matcher.CursorMatchers.withRowInt;
+import static androidx.test.espresso.matcher.CursorMatchers.withRowString;
+import static androidx.test.espresso.matcher.RootMatchers.isPlatformPopup;
 import static androidx.test.espresso.matcher.ViewMatchers.withClassName;
 import static androidx.test.espresso.matcher.ViewMatchers.withId;
 import static androidx.test.espresso.matcher.ViewMatchers.withText;
@@ -33,7 +36,7 @@ import static org.hamcrest.Matchers.is;
 
 /** Searches a place and adds a visit to it.
  * <p></p>
- * This test assumes the place is at the first position of the RecyclerView
+ * The place must already be saved, ex. from first running {@link MainActivitySearchPlaceTest}.
  * <p></p>
  * To pass this test, the test device must disable window animation scale,
  * transition animation scale, and
@@ -43,52 +46,27 @@ import static org.hamcrest.Matchers.is;
 @RunWith(AndroidJUnit4.class)
 public class AddVisitTest {
 
+    // the start of the name of the place, which is suggested as soon as it's typed
+    private static final String SEARCH_INPUT = "sweet t";
+    private static final String PLACE_NAME = "Sweet Tomatoes";
+    // columns of a suggestion with the name of its place, and 1 if the place is saved
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_IS_SAVED = "is_saved";
+
     @Rule
     public ActivityTestRule<MainActivity> mActivityTestRule = new ActivityTestRule<>(MainActivity.class);
 
     @Test
     public void addVisitTest() {
-        ViewInteraction appCompatEditText = onView(
-                allOf(withId(R.id.places_autocomplete_search_input),
-                        childAtPosition(
-                                allOf(withId(R.id.autocomplete_fragment),
-                                        childAtPosition(
-                                                withId(R.id.cardView),
-                                                0)),
-                                1),
-                        isDisplayed()));
-        appCompatEditText.perform(click());
-
-        ViewInteraction appCompatEditText2 = onView(
-                allOf(withId(R.id.places_autocomplete_search_bar),
-                        childAtPosition(
-                                allOf(withId(R.id.places_autocomplete_search_bar_container),
-                                        childAtPosition(
-                                                withClassName(is("android.widget.LinearLayout")),
-                                                0)),
-                                1),
-                        isDisplayed()));
-        appCompatEditText2.perform(replaceText("sweet t"), closeSoftKeyboard());
-
-        ViewInteraction linearLayout = onView(
-                allOf(childAtPosition(
-                        allOf(withId(R.id.places_autocomplete_list),
-                                childAtPosition(
-                                        withClassName(is("android.widget.LinearLayout")),
-                                        2)),
-                        0),
-                        isDisplayed()));
-        linearLayout.perform(click());
-
-        ViewInteraction constraintLayout = onView(
-                allOf(childAtPosition(
-                        allOf(withId(R.id.rv_places),
-                                childAtPosition(
-                                        withClassName(is("androidx.constraintlayout.widget.ConstraintLayout")),
-                                        1)),
-                        0),
-                        isDisplayed()));
-        constraintLayout.perform(click());
+        onView(withId(R.id.action_search)).perform(click());
+        onView(withId(androidx.appcompat.R.id.search_src_text))
+                .perform(typeText(SEARCH_INPUT), closeSoftKeyboard());
+
+        // open the saved place from the suggestions under the search bar
+        onData(allOf(withRowString(COLUMN_NAME, PLACE_NAME), withRowInt(COLUMN_IS_SAVED, 1)))
+                .inRoot(isPlatformPopup())
+                .atPosition(0)
+                .perform(click());
 
         ViewInteraction appCompatButton = onView(
                 allOf(withId(R.id.btn_add_visit), withText("Add Visit"),
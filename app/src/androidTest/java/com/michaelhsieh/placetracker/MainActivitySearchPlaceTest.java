@@ -1,37 +1,28 @@
 package com.michaelhsieh.placetracker;
 
 
-import android.view.View;
-import android.view.ViewGroup;
-import android.view.ViewParent;
-
 import com.michaelhsieh.placetracker.ui.MainActivity;
 
-import org.hamcrest.Description;
-import org.hamcrest.Matcher;
-import org.hamcrest.TypeSafeMatcher;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
-import androidx.test.espresso.ViewInteraction;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.LargeTest;
 import androidx.test.rule.ActivityTestRule;
 
+import static androidx.test.espresso.Espresso.onData;
 import static androidx.test.espresso.Espresso.onView;
 import static androidx.test.espresso.action.ViewActions.click;
 import static androidx.test.espresso.action.ViewActions.closeSoftKeyboard;
-import static androidx.test.espresso.action.ViewActions.replaceText;
-import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
-import static androidx.test.espresso.matcher.ViewMatchers.withClassName;
+import static androidx.test.espresso.action.ViewActions.typeText;
+import static androidx.test.espresso.matcher.CursorMatchers.withRowString;
+import static androidx.test.espresso.matcher.RootMatchers.isPlatformPopup;
 import static androidx.test.espresso.matcher.ViewMatchers.withId;
-import static org.hamcrest.Matchers.allOf;
-import static org.hamcrest.Matchers.is;
 
 /**
  * This test demos a user searching a place and
- * adding the first autocomplete entry to his or her list.
+ * adding the place suggested under the search bar to his or her list.
  * <p></p>
  * To pass this test, the test device must disable window animation scale,
  * transition animation scale, and
@@ -44,61 +35,24 @@ public class MainActivitySearchPlaceTest {
 
     // search the name of a place, ex. the restaurant Sweet Tomatoes
     private static final String SEARCH_INPUT = "sweet tomatoes";
+    // name of the place suggested, which MainActivityScreenTest expects in the list
+    private static final String PLACE_NAME = "Sweet Tomatoes";
+    // column of a suggestion with the name of its place
+    private static final String COLUMN_NAME = "name";
 
     @Rule
     public ActivityTestRule<MainActivity> mActivityTestRule = new ActivityTestRule<>(MainActivity.class);
 
     @Test
     public void searchPlace() {
-        ViewInteraction appCompatEditText = onView(
-                allOf(withId(R.id.places_autocomplete_search_input),
-                        childAtPosition(
-                                allOf(withId(R.id.autocomplete_fragment),
-                                        childAtPosition(
-                                                withId(R.id.cardView),
-                                                0)),
-                                1),
-                        isDisplayed()));
-        appCompatEditText.perform(click());
-
-        ViewInteraction appCompatEditText2 = onView(
-                allOf(withId(R.id.places_autocomplete_search_bar),
-                        childAtPosition(
-                                allOf(withId(R.id.places_autocomplete_search_bar_container),
-                                        childAtPosition(
-                                                withClassName(is("android.widget.LinearLayout")),
-                                                0)),
-                                1),
-                        isDisplayed()));
-        appCompatEditText2.perform(replaceText(SEARCH_INPUT), closeSoftKeyboard());
-
-        ViewInteraction linearLayout = onView(
-                allOf(childAtPosition(
-                        allOf(withId(R.id.places_autocomplete_list),
-                                childAtPosition(
-                                        withClassName(is("android.widget.LinearLayout")),
-                                        2)),
-                        0),
-                        isDisplayed()));
-        linearLayout.perform(click());
-    }
-
-    private static Matcher<View> childAtPosition(
-            final Matcher<View> parentMatcher, final int position) {
-
-        return new TypeSafeMatcher<View>() {
-            @Override
-            public void describeTo(Description description) {
-                description.appendText("Child at position " + position + " in parent ");
-                parentMatcher.describeTo(description);
-            }
-
-            @Override
-            public boolean matchesSafely(View view) {
-                ViewParent parent = view.getParent();
-                return parent instanceof ViewGroup && parentMatcher.matches(parent)
-                        && view.equals(((ViewGroup) parent).getChildAt(position));
-            }
-        };
+        onView(withId(R.id.action_search)).perform(click());
+        onView(withId(androidx.appcompat.R.id.search_src_text))
+                .perform(typeText(SEARCH_INPUT), closeSoftKeyboard());
+
+        // a new place is added, or a saved place is opened if the test already ran
+        onData(withRowString(COLUMN_NAME, PLACE_NAME))
+                .inRoot(isPlatformPopup())
+                .atPosition(0)
+                .perform(click());
     }
 }
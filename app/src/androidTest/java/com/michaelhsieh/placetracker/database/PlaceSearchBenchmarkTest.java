@@ -0,0 +1,197 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/** Searches 100,000 places with long notes and measures how long each search takes
+ * to load its first page, the work done after each keystroke.
+ * <p></p>
+ * The times are printed to Logcat with the tag PlaceSearchBenchmarkTest, with whether they're
+ * within the 16 ms budget of a keystroke. They depend on the device, so they're reported
+ * instead of checked. Words in nearly every place, ex. "street", read every place found
+ * and take longer than the budget.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class PlaceSearchBenchmarkTest {
+
+    private static final String TAG = PlaceSearchBenchmarkTest.class.getSimpleName();
+
+    private static final int NUM_PLACES = 100000;
+    private static final int NUM_WORDS = 20000;
+    private static final int WORDS_PER_NOTE = 150;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int PAGE_SIZE = 50;
+    // time between frames at 60 frames per second
+    private static final double KEYSTROKE_BUDGET_MILLIS = 16;
+
+    // runs paging loads on the test thread, so building a PagedList loads its first page
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private PlaceRoomDatabase database;
+    private PlaceDao placeDao;
+    private String[] words;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, PlaceRoomDatabase.class).build();
+        placeDao = database.placeDao();
+
+        Random random = new Random(42);
+        words = new String[NUM_WORDS];
+        for (int i = 0; i < NUM_WORDS; i++) {
+            words[i] = randomWord(random);
+        }
+
+        database.runInTransaction(() -> {
+            for (int i = 0; i < NUM_PLACES; i++) {
+                String name = randomWords(random, 3);
+                String address = i + " " + randomWords(random, 1) + " street";
+                PlaceModel place = new PlaceModel(String.valueOf(i), name, address);
+                place.setNotes(randomWords(random, WORDS_PER_NOTE));
+                place.setPosition((i + 1) * PlaceDao.POSITION_GAP);
+                placeDao.insert(place);
+            }
+        });
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void search_namesComeFirst() {
+        PlaceModel place = new PlaceModel("pizza place", "Zzpizza Palace", "1 Main Street");
+        place.setPosition(PlaceDao.POSITION_GAP * (NUM_PLACES + 1));
+        placeDao.insert(place);
+        PlaceModel noted = new PlaceModel("noted place", "Cafe", "2 Main Street");
+        noted.setNotes("the best zzpizza in town");
+        // before the pizza place in the list
+        noted.setPosition(0);
+        placeDao.insert(noted);
+
+        PagedList<PlaceSummary> found = search("zzpiz");
+
+        assertEquals(2, found.size());
+        assertNotNull(found.get(0));
+        assertEquals("pizza place", found.get(0).getPlaceId());
+        assertEquals("noted place", found.get(1).getPlaceId());
+    }
+
+    @Test
+    public void search_findsEveryMatch() {
+        PlaceModel draft = new PlaceModel("draft place", "Draft", "3 Main Street");
+        draft.setDraft(true);
+        placeDao.insert(draft);
+
+        // every place's address has the word, and drafts aren't shown
+        PagedList<PlaceSummary> found = search("street");
+        // pages are loaded as the list is scrolled to its end
+        while (true) {
+            int loadedCount = found.size();
+            found.loadAround(loadedCount - 1);
+            if (found.size() == loadedCount) {
+                break;
+            }
+        }
+
+        assertEquals(NUM_PLACES, found.size());
+        Set<String> placeIds = new HashSet<>();
+        for (PlaceSummary place : found) {
+            placeIds.add(place.getPlaceId());
+        }
+        // no place was loaded twice
+        assertEquals(NUM_PLACES, placeIds.size());
+    }
+
+    @Test
+    public void search_timeEachKeystroke() {
+        String word = words[7];
+        String[] typedTexts = {
+                word.substring(0, 2),
+                word.substring(0, 3),
+                word,
+                word + " " + words[11].substring(0, 2),
+                "street",
+                "12",
+        };
+
+        for (String text : typedTexts) {
+            // warm up the page cache
+            search(text);
+            long[] nanos = new long[MEASURED_ROUNDS];
+            int numFound = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                numFound = search(text).size();
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            double medianMillis = nanos[MEASURED_ROUNDS / 2] / 1e6;
+            Log.d(TAG, String.format("\"%s\": first %d places in %.1f ms, %s budget", text, numFound,
+                    medianMillis, medianMillis <= KEYSTROKE_BUDGET_MILLIS ? "within" : "over"));
+        }
+    }
+
+    // load the first page of the places found, as the places list does
+    private PagedList<PlaceSummary> search(String text) {
+        PlaceSearchQuery query = PlaceSearchQuery.parse(text);
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+        return new PagedList.Builder<>(new PlaceSearchDataSource.Factory(database, query).create(), config)
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .build();
+    }
+
+    private String randomWords(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(words[random.nextInt(words.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
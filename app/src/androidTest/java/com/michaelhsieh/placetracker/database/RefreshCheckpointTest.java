@@ -0,0 +1,127 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.content.Context;
+
+import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.VisitEntity;
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Refreshes places into an in-memory database, to check that saving places in batches
+ * only changes their names and addresses, and keeps their visits, notes, and positions.
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class RefreshCheckpointTest {
+
+    // more than the places saved in one transaction
+    private static final int NUM_PLACES = 1200;
+    // about one in ten places has a new name
+    private static final int CHANGED_PLACE_INTERVAL = 10;
+    private static final int VISITS_PER_PLACE = 3;
+    private static final long SAVE_TIMEOUT_SECONDS = 30;
+
+    private PlaceRoomDatabase database;
+    private PlaceDao placeDao;
+    private VisitDao visitDao;
+    private RefreshCheckpoint checkpoint;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, PlaceRoomDatabase.class).build();
+        placeDao = database.placeDao();
+        visitDao = database.visitDao();
+        checkpoint = new RefreshCheckpoint(database, new PhotoIngest(context), new PhotoStore(context));
+
+        database.runInTransaction(() -> {
+            for (int i = 0; i < NUM_PLACES; i++) {
+                String placeId = String.valueOf(i);
+                PlaceModel place = new PlaceModel(placeId, "Place " + i, i + " Main St");
+                place.setNotes("notes " + i);
+                place.setPosition((i + 1) * PlaceDao.POSITION_GAP);
+                placeDao.insert(place);
+                for (int j = 0; j < VISITS_PER_PLACE; j++) {
+                    visitDao.insert(new VisitEntity(placeId, getVisitedAt(i, j), "UTC", j));
+                }
+                placeDao.updateVisitStats(placeId, VISITS_PER_PLACE, getVisitedAt(i, VISITS_PER_PLACE - 1));
+            }
+        });
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void saveRefreshedPlace_keepsVisitsNotesAndPositions() throws InterruptedException {
+        long refreshStartedAt = System.currentTimeMillis();
+        assertEquals(NUM_PLACES, checkpoint.startOrResume(refreshStartedAt + 1).size());
+
+        final CountDownLatch savedLatch = new CountDownLatch(NUM_PLACES);
+        final AtomicInteger failedCount = new AtomicInteger();
+        for (int i = 0; i < NUM_PLACES; i++) {
+            String name = i % CHANGED_PLACE_INTERVAL == 0 ? "Place " + i + " (new)" : "Place " + i;
+            checkpoint.saveRefreshedPlace(String.valueOf(i), name, i + " Main St",
+                    null, null, null, new RefreshCheckpoint.SaveCallback() {
+                        @Override
+                        public void onSaved() {
+                            savedLatch.countDown();
+                        }
+
+                        @Override
+                        public void onSaveFailed(Exception exception) {
+                            failedCount.incrementAndGet();
+                        }
+                    });
+        }
+        assertTrue("places weren't saved", savedLatch.await(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, failedCount.get());
+
+        // every place was marked done, so a resumed refresh has nothing left
+        assertEquals(0, checkpoint.startOrResume(refreshStartedAt + 1).size());
+        for (int i = 0; i < NUM_PLACES; i++) {
+            String placeId = String.valueOf(i);
+            PlaceModel place = placeDao.getPlaceWithVisits(placeId).toPlaceModel();
+            String name = i % CHANGED_PLACE_INTERVAL == 0 ? "Place " + i + " (new)" : "Place " + i;
+            assertEquals(name, place.getName());
+            assertEquals(i + " Main St", place.getAddress());
+            assertEquals("notes " + i, place.getNotes());
+            assertEquals((i + 1) * PlaceDao.POSITION_GAP, place.getPosition());
+            assertTrue(place.getLastRefreshedAt() >= refreshStartedAt);
+            assertNull(place.getPhotoPath());
+
+            assertEquals(VISITS_PER_PLACE, place.getVisitCount());
+            assertEquals(VISITS_PER_PLACE, place.getNumVisits());
+            for (int j = 0; j < VISITS_PER_PLACE; j++) {
+                assertEquals(getVisitedAt(i, j), place.getVisits().get(j).getVisitedAt());
+            }
+        }
+
+        checkpoint.finish();
+    }
+
+    // the time of a place's visit, each visit a day after the one before
+    private static long getVisitedAt(int placeIndex, int visitIndex) {
+        return TimeUnit.DAYS.toMillis(placeIndex * VISITS_PER_PLACE + visitIndex);
+    }
+}
@@ -0,0 +1,87 @@
+package com.michaelhsieh.placetracker.photo;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import static org.junit.Assert.assertTrue;
+
+/** Compares the size of a photo saved by PhotoIngest with the same photo saved
+ * the way photos used to be, as a JPEG at quality 100.
+ * <p></p>
+ * The sizes are printed to Logcat with the tag PhotoIngestSizeTest.
+ * The sample photo is drawn, not taken, so the check only requires a few times smaller,
+ * while a real photo is about 10 times smaller.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PhotoIngestSizeTest {
+
+    private static final String TAG = PhotoIngestSizeTest.class.getSimpleName();
+
+    // the size photos used to be fetched at
+    private static final int PHOTO_WIDTH = 500;
+    private static final int PHOTO_HEIGHT = 300;
+    // the quality photos used to be saved at
+    private static final int OLD_JPEG_QUALITY = 100;
+    private static final int MIN_SIZE_RATIO = 3;
+
+    @Test
+    public void encode_smallerThanFullQualityJpeg() {
+        Context context = ApplicationProvider.getApplicationContext();
+        PhotoIngest photoIngest = new PhotoIngest(context);
+        Bitmap photo = createSamplePhoto();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        photo.compress(Bitmap.CompressFormat.JPEG, OLD_JPEG_QUALITY, outputStream);
+        int oldSize = outputStream.size();
+        int newSize = photoIngest.encode(photo).getBytes().length;
+        photo.recycle();
+
+        Log.d(TAG, "JPEG at quality " + OLD_JPEG_QUALITY + ": " + oldSize + " bytes, PhotoIngest: "
+                + newSize + " bytes, " + String.format("%.1f", (double) oldSize / newSize) + " times smaller");
+        assertTrue("PhotoIngest saved " + newSize + " bytes, JPEG saved " + oldSize,
+                newSize * MIN_SIZE_RATIO <= oldSize);
+    }
+
+    // a sky and textured ground with a little sensor noise, which is the same every run
+    private static Bitmap createSamplePhoto() {
+        Random random = new Random(42);
+        int[] pixels = new int[PHOTO_WIDTH * PHOTO_HEIGHT];
+        for (int y = 0; y < PHOTO_HEIGHT; y++) {
+            for (int x = 0; x < PHOTO_WIDTH; x++) {
+                int red;
+                int green;
+                int blue;
+                if (y < PHOTO_HEIGHT / 2) {
+                    red = 90 + y / 2;
+                    green = 140 + y / 3;
+                    blue = 230 - y / 4;
+                } else {
+                    double texture = Math.sin(x * 0.15) * Math.cos(y * 0.2) * 25 + Math.sin((x + y) * 0.05) * 15;
+                    red = 120 + (int) texture;
+                    green = 100 + (int) texture;
+                    blue = 70 + (int) (texture / 2);
+                }
+                int noise = random.nextInt(13) - 6;
+                pixels[y * PHOTO_WIDTH + x] = Color.rgb(clamp(red + noise), clamp(green + noise), clamp(blue + noise));
+            }
+        }
+        return Bitmap.createBitmap(pixels, PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.Config.ARGB_8888);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
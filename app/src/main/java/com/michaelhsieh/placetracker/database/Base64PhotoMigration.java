@@ -0,0 +1,53 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.util.Base64;
+import android.util.Log;
+
+import com.michaelhsieh.placetracker.photo.PhotoStore;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Moves photos saved as Base64 Strings in place_table into files in the background.
+ * <p></p>
+ * Places saved before version 3 of PlaceRoomDatabase store their photo in the base64String
+ * column. Each photo is written to a file by PhotoStore, then the place's row is updated with
+ * the file's path and hash and the Base64 String is cleared.
+ * Photos are moved one place at a time so only one photo is in memory at once.
+ * If the app is closed before finishing, the remaining photos are moved next time.
+ */
+class Base64PhotoMigration implements Runnable {
+
+    private static final String TAG = Base64PhotoMigration.class.getSimpleName();
+
+    private final PlaceDao placeDao;
+    private final PhotoStore photoStore;
+
+    Base64PhotoMigration(PlaceRoomDatabase database, PhotoStore photoStore) {
+        this.placeDao = database.placeDao();
+        this.photoStore = photoStore;
+    }
+
+    @Override
+    public void run() {
+        List<String> placeIds = placeDao.getIdsOfPlacesWithBase64Photo();
+        for (String placeId : placeIds) {
+            String base64String = placeDao.getBase64Photo(placeId);
+            if (base64String == null) {
+                continue;
+            }
+            try {
+                byte[] photoBytes = Base64.decode(base64String, Base64.DEFAULT);
+                PhotoStore.StoredPhoto storedPhoto = photoStore.save(photoBytes);
+                // The attributions text stays the same.
+                // The thumbnail is made afterwards by ThumbnailBackfill.
+                // The photo's metadata wasn't saved, so the next refresh fetches it again.
+                placeDao.updatePhoto(placeId, storedPhoto.getPath(), storedPhoto.getHash(), null,
+                        placeDao.getAttributions(placeId), null);
+            } catch (IOException | IllegalArgumentException e) {
+                // keep the Base64 String so the photo can still be displayed
+                Log.e(TAG, "Couldn't move photo of place " + placeId + " to a file", e);
+            }
+        }
+    }
+}
@@ -1,22 +1,38 @@
 package com.michaelhsieh.placetracker.database;
 
 import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceName;
+import com.michaelhsieh.placetracker.models.PlaceNameAndAddress;
+import com.michaelhsieh.placetracker.models.PlacePhoto;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+import com.michaelhsieh.placetracker.models.PlaceWithVisits;
 
 import java.util.List;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 @Dao
 public interface PlaceDao {
-    // allowing the insert of the same place multiple times by passing a
-    // conflict resolution strategy
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+
+    // space between the sort positions of neighboring places when positions are spread out.
+    // About 20 places can be dropped into the same gap before positions must be spread out again.
+    long POSITION_GAP = 1L << 20;
+
+    // no sort position is left between two places
+    long NO_GAP = 0;
+
+    // Inserting a place that's already saved fails instead of replacing it,
+    // since replacing deletes the place's visits through the foreign key.
+    // Saved places are changed with the update queries instead.
+    @Insert(onConflict = OnConflictStrategy.ABORT)
     void insert(PlaceModel place);
 
     @Delete
@@ -25,10 +41,258 @@ public interface PlaceDao {
     @Update
     void update(PlaceModel place);
 
-    // get places sorted by position
-    @Query("SELECT * from place_table ORDER BY position ASC")
-    LiveData<List<PlaceModel>> getSortedPlaces();
+    // columns of the places list.
+    // The visit count and last visit are saved in place_table with the visits,
+    // so visit_table isn't read.
+    // Drafts of places being added manually aren't in the list.
+    String SELECT_PLACE_SUMMARIES = "SELECT place_id, name, address, position, visit_count, last_visit_at, "
+            + "photo_hash, thumbnail_path FROM place_table WHERE is_draft = 0 ";
+
+    /** Get summaries of places in a sort order, a page at a time.
+     * Each order is read from its index of place_table.
+     * Place ID breaks ties so pages never overlap or skip a place.
+     *
+     * @param sort The sort order
+     * @return Summaries of the places, a page at a time
+     */
+    default DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummaries(PlaceSort sort) {
+        switch (sort) {
+            case MOST_VISITED:
+                return getPagedPlaceSummariesByMostVisited();
+            case RECENTLY_VISITED:
+                return getPagedPlaceSummariesByRecentlyVisited();
+            case LEAST_RECENTLY_VISITED:
+                return getPagedPlaceSummariesByLeastRecentlyVisited();
+            case ALPHABETICAL:
+                return getPagedPlaceSummariesByName();
+            case RECENTLY_ADDED:
+                return getPagedPlaceSummariesByRecentlyAdded();
+            case MANUAL:
+            default:
+                return getPagedPlaceSummariesByPosition();
+        }
+    }
+
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY position ASC, place_id ASC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByPosition();
+
+    // descending orders read their index backwards, so place_id is descending too
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY visit_count DESC, place_id DESC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByMostVisited();
+
+    // places never visited have a null last visit, so they come last
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY last_visit_at DESC, place_id DESC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByRecentlyVisited();
+
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY last_visit_at ASC, place_id ASC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByLeastRecentlyVisited();
+
+    // Names are compared ignoring case, with the same collation as the index
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY name COLLATE NOCASE ASC, place_id ASC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByName();
+
+    @Query(SELECT_PLACE_SUMMARIES + "ORDER BY added_at DESC, place_id DESC")
+    DataSource.Factory<Integer, PlaceSummary> getPagedPlaceSummariesByRecentlyAdded();
+
+    @Query(SELECT_PLACE_SUMMARIES + "AND place_id = "
+            + "(SELECT place_id FROM place_table WHERE is_draft = 0 ORDER BY RANDOM() LIMIT 1)")
+    PlaceSummary getRandomPlaceSummary();
+
+    // The search is paged by each place's position and Place ID, so a page is read by walking
+    // the places found in list order and stopping once the page is full. Matches are never
+    // counted, and no page sorts the places before it again.
+    String NAME_MATCHES = "AND rowid IN (SELECT docid FROM place_fts WHERE place_fts MATCH :nameQuery) ";
+    // places with the words in their address or notes, but not all of them in their name
+    String OTHER_MATCHES = "AND rowid IN (SELECT docid FROM place_fts WHERE place_fts MATCH :query) "
+            + "AND rowid NOT IN (SELECT docid FROM place_fts WHERE place_fts MATCH :nameQuery) ";
+    // the places after a position and Place ID, including the place itself if inclusive is true
+    String AFTER_KEY = "AND (position > :position OR (position = :position "
+            + "AND (place_id > :placeId OR (:inclusive AND place_id = :placeId)))) "
+            + "ORDER BY position ASC, place_id ASC LIMIT :limit";
+    // the places before a position and Place ID, nearest first
+    String BEFORE_KEY = "AND (position < :position OR (position = :position AND place_id < :placeId)) "
+            + "ORDER BY position DESC, place_id DESC LIMIT :limit";
 
+    // places with every searched word in their name, in list order after a place
+    @Query(SELECT_PLACE_SUMMARIES + NAME_MATCHES + AFTER_KEY)
+    List<PlaceSummary> searchNameMatchesAfter(String nameQuery, long position, String placeId,
+                                              boolean inclusive, int limit);
+
+    @Query(SELECT_PLACE_SUMMARIES + NAME_MATCHES + BEFORE_KEY)
+    List<PlaceSummary> searchNameMatchesBefore(String nameQuery, long position, String placeId, int limit);
+
+    // places with the words only in their address or notes, in list order after a place
+    @Query(SELECT_PLACE_SUMMARIES + OTHER_MATCHES + AFTER_KEY)
+    List<PlaceSummary> searchOtherMatchesAfter(String query, String nameQuery, long position, String placeId,
+                                               boolean inclusive, int limit);
+
+    @Query(SELECT_PLACE_SUMMARIES + OTHER_MATCHES + BEFORE_KEY)
+    List<PlaceSummary> searchOtherMatchesBefore(String query, String nameQuery, long position, String placeId,
+                                                int limit);
+
+    // in Place ID order, so the names can be compared with the names read before
+    @Query("SELECT place_id, name FROM place_table WHERE is_draft = 0 ORDER BY place_id")
+    List<PlaceName> getPlaceNames();
+
+    // the saved names and addresses of places, to compare with their refreshed ones
+    @Query("SELECT place_id, name, address FROM place_table WHERE place_id IN (:ids)")
+    List<PlaceNameAndAddress> getNamesAndAddresses(List<String> ids);
+
+    @Query("SELECT place_id FROM place_table WHERE is_draft = 0 ORDER BY position ASC, place_id ASC")
+    List<String> getSortedPlaceIds();
+
+    @Query("SELECT COUNT(*) FROM place_table WHERE place_id = :id")
+    int countPlacesWithId(String id);
+
+    // sort position after the last place in the list
+    @Query("SELECT COALESCE(MAX(position), 0) + " + POSITION_GAP + " FROM place_table")
+    long getNextPosition();
+
+    @Query("SELECT position FROM place_table WHERE place_id = :id")
+    Long getPosition(String id);
+
+    @Transaction
     @Query("SELECT * FROM place_table WHERE place_id =:id")
-    LiveData<PlaceModel> getPlaceById(String id);
+    LiveData<PlaceWithVisits> getPlaceById(String id);
+
+    // get a place and its visits on the calling thread, ex. to restore a draft
+    @Transaction
+    @Query("SELECT * FROM place_table WHERE place_id = :id")
+    PlaceWithVisits getPlaceWithVisits(String id);
+
+    @Query("DELETE FROM place_table WHERE place_id = :id")
+    void deleteById(String id);
+
+    // show a draft in the places list at this sort position, added at this time
+    @Query("UPDATE place_table SET is_draft = 0, position = :position, added_at = :addedAt "
+            + "WHERE place_id = :id AND is_draft = 1")
+    void publishDraft(String id, long position, long addedAt);
+
+    // Only deletes the place if it's still a draft.
+    // The draft's visit rows are deleted with it.
+    @Query("DELETE FROM place_table WHERE place_id = :id AND is_draft = 1")
+    void deleteDraft(String id);
+
+    // save when a draft was last saved, so it isn't deleted as left behind
+    @Query("UPDATE place_table SET added_at = :savedAt WHERE place_id = :id AND is_draft = 1")
+    void updateDraftSavedAt(String id, long savedAt);
+
+    // delete the drafts that haven't been saved since a time
+    @Query("DELETE FROM place_table WHERE is_draft = 1 AND added_at < :savedBefore")
+    void deleteDraftsSavedBefore(long savedBefore);
+
+    // only write the columns that changed
+    @Query("UPDATE place_table SET name = :name, address = :address WHERE place_id = :id")
+    void updateNameAndAddress(String id, String name, String address);
+
+    @Query("UPDATE place_table SET notes = :notes WHERE place_id = :id")
+    void updateNotes(String id, String notes);
+
+    // save a place's name and address fetched from the Places API at this time
+    @Query("UPDATE place_table SET name = :name, address = :address, last_refreshed_at = :refreshedAt "
+            + "WHERE place_id = :id")
+    void updateRefreshedInfo(String id, String name, String address, long refreshedAt);
+
+    // save that places fetched from the Places API at this time didn't change
+    @Query("UPDATE place_table SET last_refreshed_at = :refreshedAt WHERE place_id IN (:ids)")
+    void updateLastRefreshedAt(List<String> ids, long refreshedAt);
+
+    // The row is only written if the count or last visit changed,
+    // so the search index of the place isn't updated for nothing.
+    @Query("UPDATE place_table SET visit_count = :visitCount, last_visit_at = :lastVisitAt "
+            + "WHERE place_id = :id AND (visit_count != :visitCount OR last_visit_at IS NOT :lastVisitAt)")
+    void updateVisitStats(String id, int visitCount, Long lastVisitAt);
+
+    @Query("UPDATE place_table SET position = :position WHERE place_id = :id")
+    void updatePosition(String id, long position);
+
+    /** Move a place between two places by giving it the sort position halfway between theirs.
+     * Only the moved place's row is written.
+     *
+     * @param id The Place ID of the moved place
+     * @param previousId The Place ID of the place now before it, or null if it's first
+     * @param nextId The Place ID of the place now after it, or null if it's last
+     * @return The smaller gap left between the moved place and its neighbors,
+     * or NO_GAP if there was no position left between them and the place wasn't moved
+     */
+    @Transaction
+    default long movePlaceBetween(String id, String previousId, String nextId) {
+        Long previousPosition = previousId == null ? null : getPosition(previousId);
+        Long nextPosition = nextId == null ? null : getPosition(nextId);
+
+        long position;
+        long gap;
+        if (previousPosition == null && nextPosition == null) {
+            // the only place in the list
+            return POSITION_GAP;
+        } else if (previousPosition == null) {
+            position = nextPosition - POSITION_GAP;
+            gap = POSITION_GAP;
+        } else if (nextPosition == null) {
+            position = previousPosition + POSITION_GAP;
+            gap = POSITION_GAP;
+        } else {
+            if (nextPosition - previousPosition < 2) {
+                return NO_GAP;
+            }
+            position = previousPosition + (nextPosition - previousPosition) / 2;
+            gap = Math.min(position - previousPosition, nextPosition - position);
+        }
+        updatePosition(id, position);
+        return gap;
+    }
+
+    /** Spread out the sort positions of every place by POSITION_GAP, keeping their order.
+     * Only needed once places have been dropped into the same gap many times.
+     */
+    @Transaction
+    default void spreadOutPositions() {
+        List<String> placeIds = getSortedPlaceIds();
+        for (int i = 0; i < placeIds.size(); i++) {
+            updatePosition(placeIds.get(i), (i + 1) * POSITION_GAP);
+        }
+    }
+
+    // set a place's photo file, thumbnail file, attributions text, and photo reference,
+    // clearing the Base64 photo it was stored as before
+    @Query("UPDATE place_table SET photo_path = :path, photo_hash = :hash, thumbnail_path = :thumbnailPath, "
+            + "attributions = :attributions, photo_reference = :photoReference, base64String = NULL "
+            + "WHERE place_id = :id")
+    void updatePhoto(String id, String path, String hash, String thumbnailPath, String attributions,
+                     String photoReference);
+
+    // Set the thumbnail of a place's photo.
+    // Does nothing and returns 0 if the place's photo was replaced since the thumbnail was made.
+    @Query("UPDATE place_table SET thumbnail_path = :thumbnailPath "
+            + "WHERE place_id = :id AND photo_hash = :photoHash")
+    int updateThumbnail(String id, String photoHash, String thumbnailPath);
+
+    @Query("SELECT photo_path FROM place_table WHERE place_id = :id")
+    String getPhotoPath(String id);
+
+    @Query("SELECT thumbnail_path FROM place_table WHERE place_id = :id")
+    String getThumbnailPath(String id);
+
+    // number of places using the photo file at this path
+    @Query("SELECT COUNT(*) FROM place_table WHERE photo_path = :path")
+    int countPlacesWithPhoto(String path);
+
+    // number of places using the thumbnail file at this path
+    @Query("SELECT COUNT(*) FROM place_table WHERE thumbnail_path = :path")
+    int countPlacesWithThumbnail(String path);
+
+    // get places with a photo file but no thumbnail, ex. saved before thumbnails were made
+    @Query("SELECT place_id, photo_path, photo_hash FROM place_table "
+            + "WHERE photo_path IS NOT NULL AND thumbnail_path IS NULL")
+    List<PlacePhoto> getPhotosWithoutThumbnail();
+
+    // get places whose photo is still stored as a Base64 String
+    @Query("SELECT place_id FROM place_table WHERE base64String IS NOT NULL")
+    List<String> getIdsOfPlacesWithBase64Photo();
+
+    @Query("SELECT base64String FROM place_table WHERE place_id = :id")
+    String getBase64Photo(String id);
+
+    @Query("SELECT attributions FROM place_table WHERE place_id = :id")
+    String getAttributions(String id);
 }
@@ -0,0 +1,254 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.database.Cursor;
+
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+/** Migrations between versions of PlaceRoomDatabase.
+ * <p></p>
+ * Each CREATE statement must match the schema Room expects for the entity,
+ * or Room will throw an exception when the database is opened.
+ */
+final class PlaceMigrations {
+
+    private PlaceMigrations() {
+    }
+
+    /** Version 2 moves visits out of the JSON visits column of place_table
+     * and into their own rows in visit_table.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `visit_table` ("
+                    + "`visit_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`place_id` TEXT NOT NULL, "
+                    + "`visited_at` INTEGER NOT NULL, "
+                    + "`time_zone` TEXT, "
+                    + "`position` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`place_id`) REFERENCES `place_table`(`place_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_visit_table_place_id_visited_at` "
+                    + "ON `visit_table` (`place_id`, `visited_at`)");
+
+            // insert one row for every visit in every place's JSON String
+            SupportSQLiteStatement insertVisit = database.compileStatement(
+                    "INSERT INTO visit_table (place_id, visited_at, time_zone, position) "
+                            + "VALUES (?, ?, ?, ?)");
+            Cursor cursor = database.query("SELECT place_id, visits FROM place_table");
+            try {
+                while (cursor.moveToNext()) {
+                    String placeId = cursor.getString(0);
+                    List<Visit> visits = VisitCodec.decodeLegacyJson(cursor.getString(1));
+                    for (int i = 0; i < visits.size(); i++) {
+                        Visit visit = visits.get(i);
+                        insertVisit.bindString(1, placeId);
+                        insertVisit.bindLong(2, visit.getVisitedAt());
+                        insertVisit.bindString(3, visit.getTimeZone());
+                        insertVisit.bindLong(4, i);
+                        insertVisit.executeInsert();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            // SQLite can't drop a column, so copy place_table without the visits column.
+            // Foreign keys are not enforced during a migration, so dropping
+            // place_table doesn't delete the new visit rows.
+            database.execSQL("CREATE TABLE IF NOT EXISTS `place_table_new` ("
+                    + "`place_id` TEXT NOT NULL, "
+                    + "`name` TEXT, "
+                    + "`address` TEXT, "
+                    + "`notes` TEXT, "
+                    + "`base64String` TEXT, "
+                    + "`attributions` TEXT, "
+                    + "`position` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`place_id`))");
+            database.execSQL("INSERT INTO place_table_new "
+                    + "(place_id, name, address, notes, base64String, attributions, position) "
+                    + "SELECT place_id, name, address, notes, base64String, attributions, position "
+                    + "FROM place_table");
+            database.execSQL("DROP TABLE place_table");
+            database.execSQL("ALTER TABLE place_table_new RENAME TO place_table");
+        }
+    };
+
+    /** Version 3 adds the path and content hash of a place's photo file.
+     * Existing Base64 photos are moved to files in the background by Base64PhotoMigration.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE place_table ADD COLUMN `photo_path` TEXT");
+            database.execSQL("ALTER TABLE place_table ADD COLUMN `photo_hash` TEXT");
+        }
+    };
+
+    /** Version 4 spreads out sort positions by PlaceDao.POSITION_GAP, keeping the places' order,
+     * so a moved place can take a position between two others.
+     * The position column is still an INTEGER, so the table doesn't change.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // read every Place ID before writing, since updating positions
+            // would change the order of a cursor sorted by position
+            List<String> placeIds = new ArrayList<>();
+            Cursor cursor = database.query(
+                    "SELECT place_id FROM place_table ORDER BY position ASC, place_id ASC");
+            try {
+                while (cursor.moveToNext()) {
+                    placeIds.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            SupportSQLiteStatement updatePosition = database.compileStatement(
+                    "UPDATE place_table SET position = ? WHERE place_id = ?");
+            for (int i = 0; i < placeIds.size(); i++) {
+                updatePosition.bindLong(1, (i + 1) * PlaceDao.POSITION_GAP);
+                updatePosition.bindString(2, placeIds.get(i));
+                updatePosition.executeUpdateDelete();
+            }
+        }
+    };
+
+    /** Version 5 adds the is_draft column of place_table, for places still being added manually.
+     * Existing places aren't drafts.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `is_draft` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /** Version 6 adds place_fts, the full-text search index of place_table.
+     * Room creates the triggers that keep it up to date after every migration.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `place_fts` USING FTS4("
+                    + "`name` TEXT, `address` TEXT, `notes` TEXT, "
+                    + "content=`place_table`, prefix=`2,3`)");
+            // index the places already in place_table
+            database.execSQL("INSERT INTO `place_fts`(`place_fts`) VALUES('rebuild')");
+        }
+    };
+
+    /** Version 7 saves the visit count and last visit of each place in place_table,
+     * so they don't have to be counted from visit_table every time the places list is read.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `visit_count` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `last_visit_at` INTEGER");
+            // Room drops the search index triggers during migrations,
+            // so this doesn't update the search index of every place
+            database.execSQL("UPDATE `place_table` SET "
+                    + "`visit_count` = (SELECT COUNT(*) FROM `visit_table` "
+                    + "WHERE `visit_table`.`place_id` = `place_table`.`place_id`), "
+                    + "`last_visit_at` = (SELECT MAX(`visited_at`) FROM `visit_table` "
+                    + "WHERE `visit_table`.`place_id` = `place_table`.`place_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_visit_count` "
+                    + "ON `place_table` (`visit_count`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_last_visit_at` "
+                    + "ON `place_table` (`last_visit_at`)");
+        }
+    };
+
+    /** Version 8 adds the date and time each place was added, and an index for each
+     * sort order of the places list. The indexes end with place_id, which breaks ties,
+     * so they replace the indexes of visit_count and last_visit_at.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `added_at` INTEGER NOT NULL DEFAULT 0");
+            // When places were added wasn't saved, but rowids increase as places are inserted,
+            // so they keep the order places were added in, before any place added from now on
+            database.execSQL("UPDATE `place_table` SET `added_at` = `rowid`");
+
+            database.execSQL("DROP INDEX IF EXISTS `index_place_table_visit_count`");
+            database.execSQL("DROP INDEX IF EXISTS `index_place_table_last_visit_at`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_position_place_id` "
+                    + "ON `place_table` (`position`, `place_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_visit_count_place_id` "
+                    + "ON `place_table` (`visit_count`, `place_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_last_visit_at_place_id` "
+                    + "ON `place_table` (`last_visit_at`, `place_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_name_place_id` "
+                    + "ON `place_table` (`name`, `place_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_added_at_place_id` "
+                    + "ON `place_table` (`added_at`, `place_id`)");
+        }
+    };
+
+    /** Version 9 adds the path of each photo's thumbnail, shown in the places list.
+     * Thumbnails of existing photos are made in the background by ThumbnailBackfill.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `thumbnail_path` TEXT");
+        }
+    };
+
+    /** Version 10 adds the queue of places being refreshed,
+     * so a refresh can resume after the app's process is stopped.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `refresh_queue` (`place_id` TEXT NOT NULL, "
+                    + "`is_done` INTEGER NOT NULL, PRIMARY KEY(`place_id`))");
+        }
+    };
+
+    /** Version 11 saves when each place was last refreshed and which photo it has,
+     * so a refresh only fetches places that are stale and photos that changed.
+     * Places added manually are marked, so they're never sent to the Places API.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `is_manual` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `last_refreshed_at` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `place_table` ADD COLUMN `photo_reference` TEXT");
+            // Manual places have a random UUID as their Place ID, ex. 123e4567-e89b-12d3-a456-426614174000,
+            // which a Place ID from the Places API never looks like.
+            // Drafts are always being added manually.
+            database.execSQL("UPDATE `place_table` SET `is_manual` = 1 WHERE `is_draft` = 1 "
+                    + "OR (length(`place_id`) = 36 AND substr(`place_id`, 9, 1) = '-' "
+                    + "AND substr(`place_id`, 14, 1) = '-' AND substr(`place_id`, 19, 1) = '-' "
+                    + "AND substr(`place_id`, 24, 1) = '-')");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_is_manual_last_refreshed_at` "
+                    + "ON `place_table` (`is_manual`, `last_refreshed_at`)");
+        }
+    };
+
+    /** Version 12 sorts place names ignoring case, so "apple" comes before "Zoo".
+     * The name column keeps its collation in existing tables,
+     * so the index of names is made again with the collation the sort uses.
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP INDEX IF EXISTS `index_place_table_name_place_id`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_place_table_name_place_id` "
+                    + "ON `place_table` (`name` COLLATE NOCASE, `place_id`)");
+        }
+    };
+}
@@ -0,0 +1,139 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.PlaceName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/** An in-memory index of the names of saved places, to suggest saved places
+ * as soon as the user types, without waiting for the database or the Places API.
+ * <p></p>
+ * Each name is indexed from the start of each of its words, so "pi" finds
+ * both "Pizza Palace" and "Joe's Pizza". The index is never changed once built,
+ * so it can be read on the main thread while a new one is built in the background.
+ */
+public final class PlaceNameIndex {
+
+    static final PlaceNameIndex EMPTY = build(Collections.<PlaceName>emptyList());
+
+    // lowercase name from the start of each word, sorted
+    private final String[] keys;
+    // the place each key was taken from
+    private final PlaceName[] places;
+
+    // lowercase whole names, to check for an exact match
+    private final Set<String> names;
+    private final Set<String> placeIds;
+
+    private PlaceNameIndex(String[] keys, PlaceName[] places, Set<String> names, Set<String> placeIds) {
+        this.keys = keys;
+        this.places = places;
+        this.names = names;
+        this.placeIds = placeIds;
+    }
+
+    /** Build an index of place names. Must be called on a non-UI thread for many places.
+     *
+     * @param placeNames The saved places
+     * @return The index
+     */
+    static PlaceNameIndex build(List<PlaceName> placeNames) {
+        List<Key> keyList = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        Set<String> placeIds = new HashSet<>();
+        for (PlaceName place : placeNames) {
+            placeIds.add(place.getPlaceId());
+            String name = normalize(place.getName());
+            if (name.isEmpty()) {
+                continue;
+            }
+            names.add(name);
+            for (int i = 0; i < name.length(); i++) {
+                // a word starts at the start of the name or after a space or punctuation
+                boolean isWordStart = i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1));
+                if (isWordStart && Character.isLetterOrDigit(name.charAt(i))) {
+                    keyList.add(new Key(name.substring(i), place));
+                }
+            }
+        }
+        Collections.sort(keyList, new Comparator<Key>() {
+            @Override
+            public int compare(Key first, Key second) {
+                return first.text.compareTo(second.text);
+            }
+        });
+
+        String[] keys = new String[keyList.size()];
+        PlaceName[] places = new PlaceName[keyList.size()];
+        for (int i = 0; i < keyList.size(); i++) {
+            keys[i] = keyList.get(i).text;
+            places[i] = keyList.get(i).place;
+        }
+        return new PlaceNameIndex(keys, places, names, placeIds);
+    }
+
+    /** Find saved places with a word in their name starting with the text.
+     *
+     * @param text The text the user typed
+     * @param limit The most places to find
+     * @return The places found, each once, in alphabetical order of the matching words
+     */
+    public List<PlaceName> findByPrefix(String text, int limit) {
+        List<PlaceName> found = new ArrayList<>();
+        String prefix = normalize(text);
+        if (prefix.isEmpty()) {
+            return found;
+        }
+        // first key that isn't before the prefix
+        int start = Arrays.binarySearch(keys, prefix);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        Set<String> foundIds = new HashSet<>();
+        for (int i = start; i < keys.length && found.size() < limit && keys[i].startsWith(prefix); i++) {
+            // a name with the prefix in two words is only found once
+            if (foundIds.add(places[i].getPlaceId())) {
+                found.add(places[i]);
+            }
+        }
+        return found;
+    }
+
+    /** Check if a saved place has exactly this name, ignoring case.
+     *
+     * @param text The text the user typed
+     * @return True if a saved place has this name
+     */
+    public boolean containsName(String text) {
+        return names.contains(normalize(text));
+    }
+
+    /** Check if a place is saved.
+     *
+     * @param placeId The Place ID of the place
+     * @return True if the place is saved
+     */
+    public boolean containsPlace(String placeId) {
+        return placeIds.contains(placeId);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Key {
+        private final String text;
+        private final PlaceName place;
+
+        Key(String text, PlaceName place) {
+            this.text = text;
+            this.place = place;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.util.Log;
+
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
+
+import java.io.IOException;
+
+/** Saves a place's compressed photo and thumbnail to files and sets the place's photo to them,
+ * deleting the files of the place's previous photo once no place uses them.
+ * <p></p>
+ * All methods must be called on the database thread,
+ * so a photo file is never deleted while a place is being set to it.
+ */
+final class PlacePhotoWriter {
+
+    private static final String TAG = PlacePhotoWriter.class.getSimpleName();
+
+    private final PlaceDao placeDao;
+    private final PhotoStore photoStore;
+
+    PlacePhotoWriter(PlaceDao placeDao, PhotoStore photoStore) {
+        this.placeDao = placeDao;
+        this.photoStore = photoStore;
+    }
+
+    /** Save a compressed photo and its thumbnail to files and set the place's photo to them.
+     *
+     * @param placeId The Place ID of the place
+     * @param encodedPhoto The compressed photo
+     * @param thumbnail The compressed thumbnail
+     * @param attributions The attributions text of the photo
+     * @param photoReference Identifies the photo metadata the photo was fetched with
+     * @return true if the photo was saved
+     */
+    boolean save(String placeId, PhotoIngest.EncodedPhoto encodedPhoto,
+                 PhotoIngest.EncodedPhoto thumbnail, String attributions, String photoReference) {
+        PhotoStore.StoredPhoto storedPhoto;
+        PhotoStore.StoredPhoto storedThumbnail;
+        try {
+            storedPhoto = photoStore.save(encodedPhoto.getBytes(), encodedPhoto.getExtension());
+            storedThumbnail = photoStore.saveThumbnail(thumbnail.getBytes(), thumbnail.getExtension());
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't save photo of place " + placeId, e);
+            return false;
+        }
+        String oldPath = placeDao.getPhotoPath(placeId);
+        String oldThumbnailPath = placeDao.getThumbnailPath(placeId);
+        placeDao.updatePhoto(placeId, storedPhoto.getPath(), storedPhoto.getHash(),
+                storedThumbnail.getPath(), attributions, photoReference);
+        if (oldPath != null && !oldPath.equals(storedPhoto.getPath())) {
+            deletePhotoIfUnused(oldPath);
+        }
+        if (oldThumbnailPath != null && !oldThumbnailPath.equals(storedThumbnail.getPath())) {
+            deleteThumbnailIfUnused(oldThumbnailPath);
+        }
+        return true;
+    }
+
+    /** Delete a photo file once no place in the database uses it anymore.
+     *
+     * @param path The path of the photo file, or null if there's no photo
+     */
+    void deletePhotoIfUnused(String path) {
+        if (path != null && placeDao.countPlacesWithPhoto(path) == 0) {
+            photoStore.delete(path);
+        }
+    }
+
+    // delete a thumbnail file once no place uses it anymore
+    void deleteThumbnailIfUnused(String path) {
+        if (path != null && placeDao.countPlacesWithThumbnail(path) == 0) {
+            photoStore.delete(path);
+        }
+    }
+}
@@ -1,52 +1,567 @@
 package com.michaelhsieh.placetracker.database;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
 
 import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceName;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+import com.michaelhsieh.placetracker.models.PlaceWithVisits;
+import com.michaelhsieh.placetracker.models.RefreshProgress;
+import com.michaelhsieh.placetracker.models.VisitEntity;
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import androidx.annotation.NonNull;
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import androidx.room.InvalidationTracker;
 
 public class PlaceRepository {
 
+    // number of places loaded at a time as the places list is scrolled
+    private static final int PAGE_SIZE = 50;
+
+    // most places kept in memory at once.
+    // Pages far from the rows on screen are dropped and loaded again when scrolled back to.
+    private static final int MAX_LOADED_PLACES = 10 * PAGE_SIZE;
+
+    // Drafts that haven't been saved for this long are left behind, ex. by a stopped app.
+    // A draft is saved whenever the user leaves it, so a draft still being edited is newer.
+    private static final long DRAFT_EXPIRY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // positions are spread out in the background once a gap is this small
+    private static final long MIN_POSITION_GAP = 16;
+
+    // saves the sort order the user picked for the places list
+    private static final String PREFERENCES_NAME = "place_list";
+    private static final String KEY_PLACE_SORT = "place_sort";
+
+    /** Receives the result of a query run on the database thread.
+     *
+     * @param <T> The type of the result
+     */
+    public interface ResultListener<T> {
+        // called on the main thread
+        void onResult(T result);
+    }
+
+    private PlaceRoomDatabase database;
     private PlaceDao placeDao;
-    private LiveData<List<PlaceModel>> allPlaces;
+    private VisitDao visitDao;
+    private RefreshDao refreshDao;
+    private PlacePhotoWriter photoWriter;
+    private PhotoIngest photoIngest;
+    private LiveData<PagedList<PlaceSummary>> placeSummaries;
+    private PagedList.Config pagedListConfig;
+    private PagedList.Config searchConfig;
+
+    private SharedPreferences preferences;
+    // the places list is loaded again in the new order whenever this changes
+    private MutableLiveData<PlaceSort> placeSort = new MutableLiveData<>();
+
+    // saved place names to suggest while the user types,
+    // replaced with a new index whenever a place is added, removed, or renamed
+    private volatile PlaceNameIndex placeNameIndex = PlaceNameIndex.EMPTY;
+    // the names in the index, only read and written on the index thread
+    private List<PlaceName> indexedPlaceNames = Collections.emptyList();
+
+    // indexes place names again when place_table changes, or null if not watching
+    private InvalidationTracker.Observer placeNameObserver;
+
+    // Reads the place names and builds their index, so indexing doesn't hold up
+    // the writes on the database thread, ex. while a refresh or photo backfill is saving.
+    private static final ExecutorService placeNameIndexExecutor = Executors.newSingleThreadExecutor();
+
+    // whether indexing is waiting on the index thread,
+    // so many changes in a row only index the names once
+    private final AtomicBoolean isIndexingPlaceNames = new AtomicBoolean();
+
+    // posts query results back to the main thread
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
 
     PlaceRepository(Application application) {
-        PlaceRoomDatabase database = PlaceRoomDatabase.getDatabase(application);
+        database = PlaceRoomDatabase.getDatabase(application);
         placeDao = database.placeDao();
-        allPlaces = placeDao.getSortedPlaces();
+        visitDao = database.visitDao();
+        refreshDao = database.refreshDao();
+        photoWriter = new PlacePhotoWriter(placeDao, new PhotoStore(application));
+        photoIngest = new PhotoIngest(application);
+
+        // placeholders let the list show its full length and scroll bar
+        // before every page is loaded
+        pagedListConfig = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setEnablePlaceholders(true)
+                .setMaxSize(MAX_LOADED_PLACES)
+                .build();
+        // the places found aren't counted, so there are no placeholders
+        searchConfig = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+
+        preferences = application.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        placeSort.setValue(PlaceSort.fromName(preferences.getString(KEY_PLACE_SORT, null)));
+        placeSummaries = Transformations.switchMap(placeSort,
+                new Function<PlaceSort, LiveData<PagedList<PlaceSummary>>>() {
+                    @Override
+                    public LiveData<PagedList<PlaceSummary>> apply(PlaceSort sort) {
+                        return new LivePagedListBuilder<>(placeDao.getPagedPlaceSummaries(sort),
+                                pagedListConfig).build();
+                    }
+                });
     }
 
     // Room executes all queries on a separate thread.
     // Observed LiveData will notify the observer when the data has changed.
-    LiveData<List<PlaceModel>> getAllPlaces() {
-        return allPlaces;
+    LiveData<PagedList<PlaceSummary>> getPlaceSummaries() {
+        return placeSummaries;
+    }
+
+    LiveData<PlaceSort> getPlaceSort() {
+        return placeSort;
+    }
+
+    /** Sort the places list in a new order, which is saved for the next time the app starts.
+     * Must be called on the main thread.
+     *
+     * @param sort The sort order
+     */
+    void setPlaceSort(PlaceSort sort) {
+        if (sort != placeSort.getValue()) {
+            preferences.edit().putString(KEY_PLACE_SORT, sort.name()).apply();
+            placeSort.setValue(sort);
+        }
+    }
+
+    /** Search places by the words in their name, address, and notes.
+     * The search runs on a background thread, so it doesn't slow down typing.
+     *
+     * @param text The text typed into the search bar
+     * @return The places found, or every place if the text has no words to search
+     */
+    LiveData<PagedList<PlaceSummary>> searchPlaceSummaries(String text) {
+        PlaceSearchQuery query = PlaceSearchQuery.parse(text);
+        if (query == null) {
+            return placeSummaries;
+        }
+        return new LivePagedListBuilder<>(new PlaceSearchDataSource.Factory(database, query),
+                searchConfig).build();
+    }
+
+    /** Keep an index of the saved place names up to date until stopWatchingPlaceNames is called.
+     *
+     */
+    void watchPlaceNames() {
+        if (placeNameObserver != null) {
+            return;
+        }
+        placeNameObserver = new InvalidationTracker.Observer("place_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                indexPlaceNames();
+            }
+        };
+        database.getInvalidationTracker().addObserver(placeNameObserver);
+        indexPlaceNames();
+    }
+
+    void stopWatchingPlaceNames() {
+        if (placeNameObserver != null) {
+            database.getInvalidationTracker().removeObserver(placeNameObserver);
+            placeNameObserver = null;
+        }
+    }
+
+    /** Get the latest index of saved place names. This doesn't query the database,
+     * so it can be called on the main thread every time the user types.
+     *
+     * @return The index, which is empty until the names are first indexed
+     */
+    PlaceNameIndex getPlaceNameIndex() {
+        return placeNameIndex;
+    }
+
+    void loadRandomPlace(ResultListener<PlaceSummary> listener) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            postResult(listener, placeDao.getRandomPlaceSummary());
+        });
+    }
+
+    // how many places are queued and done in the current refresh, saved across app restarts
+    LiveData<RefreshProgress> getRefreshProgress() {
+        return refreshDao.getProgress();
     }
 
     LiveData<PlaceModel> getPlaceById(String id) {
-        return placeDao.getPlaceById(id);
+        return Transformations.map(placeDao.getPlaceById(id),
+                new Function<PlaceWithVisits, PlaceModel>() {
+                    @Override
+                    public PlaceModel apply(PlaceWithVisits placeWithVisits) {
+                        // null if the place was deleted
+                        if (placeWithVisits == null) {
+                            return null;
+                        }
+                        return placeWithVisits.toPlaceModel();
+                    }
+                });
     }
 
-    // You must call this on a non-UI thread or your app will throw an exception. Room ensures
-    // that you're not doing any long running operations on the main thread, blocking the UI.
-    void insert(PlaceModel place) {
+    /** Insert a place unless a place with the same Place ID is already in the database.
+     *
+     * @param place The place to insert
+     * @param listener Receives true if the place was inserted,
+     *                 or false if it was already in the database
+     */
+    void insertIfNew(PlaceModel place, ResultListener<Boolean> listener) {
         PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            placeDao.insert(place);
+            boolean isNewPlace = database.runInTransaction(() -> {
+                if (placeDao.countPlacesWithId(place.getPlaceId()) > 0) {
+                    return false;
+                }
+                insertAtEnd(place);
+                return true;
+            });
+            postResult(listener, isNewPlace);
         });
     }
 
-    void delete(PlaceModel place) {
+    void deletePlaceById(String id) {
         PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            placeDao.delete(place);
+            String photoPath = placeDao.getPhotoPath(id);
+            String thumbnailPath = placeDao.getThumbnailPath(id);
+            // the place's visit rows are deleted with it
+            placeDao.deleteById(id);
+            photoWriter.deletePhotoIfUnused(photoPath);
+            photoWriter.deleteThumbnailIfUnused(thumbnailPath);
         });
     }
 
-    void update(PlaceModel place) {
+    void updateNameAndAddress(String id, String name, String address) {
         PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            placeDao.update(place);
+            placeDao.updateNameAndAddress(id, name, address);
         });
     }
 
+    void updateNotes(String id, String notes) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            placeDao.updateNotes(id, notes);
+        });
+    }
+
+    /** Save a place's visits. Only the visits that were added, edited, moved, or deleted are written.
+     *
+     * @param id The Place ID of the place
+     * @param visits The place's visits in the order the user arranged them.
+     *               The visits are copied, so the user can keep editing them.
+     */
+    void updateVisits(String id, List<Visit> visits) {
+        List<Visit> savedVisits = new ArrayList<>(visits);
+        List<VisitEntity> visitCopies = copyVisits(id, visits);
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            long[] visitIds = database.runInTransaction(() -> saveVisits(id, visitCopies));
+            postVisitIds(savedVisits, visitIds);
+        });
+    }
+
+    /** Save a new draft of a place the user is adding manually.
+     * The draft isn't shown in the places list until it's published.
+     *
+     * @param place The place being added, with a newly generated Place ID.
+     *              Its visits are copied, so the user can keep editing them.
+     */
+    void insertDraft(PlaceModel place) {
+        place.setDraft(true);
+        // the Place ID is generated, so the Places API can't refresh the place
+        place.setManual(true);
+        place.setAddedAt(System.currentTimeMillis());
+        String id = place.getPlaceId();
+        List<Visit> savedVisits = new ArrayList<>(place.getVisits());
+        List<VisitEntity> visitCopies = copyVisits(id, savedVisits);
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            long[] visitIds = database.runInTransaction(() -> {
+                placeDao.insert(place);
+                return saveVisits(id, visitCopies);
+            });
+            postVisitIds(savedVisits, visitIds);
+        });
+    }
+
+    /** Save the user's latest changes to a draft.
+     * Writes run in order on the database thread, so the last save wins.
+     * A draft that was deleted as left behind, ex. after the user left it for days, is added again.
+     *
+     * @param place The draft with the user's current name, address, notes, and visits.
+     *              Its visits are copied, so the user can keep editing them.
+     */
+    void saveDraft(PlaceModel place) {
+        String id = place.getPlaceId();
+        String name = place.getName();
+        String address = place.getAddress();
+        String notes = place.getNotes();
+        List<Visit> savedVisits = new ArrayList<>(place.getVisits());
+        List<VisitEntity> visitCopies = copyVisits(id, savedVisits);
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            long[] visitIds = database.runInTransaction(() -> {
+                long savedAt = System.currentTimeMillis();
+                if (placeDao.countPlacesWithId(id) == 0) {
+                    PlaceModel draft = new PlaceModel(id, name, address);
+                    draft.setDraft(true);
+                    draft.setManual(true);
+                    draft.setAddedAt(savedAt);
+                    placeDao.insert(draft);
+                }
+                placeDao.updateNameAndAddress(id, name, address);
+                placeDao.updateNotes(id, notes);
+                placeDao.updateDraftSavedAt(id, savedAt);
+                return saveVisits(id, visitCopies);
+            });
+            postVisitIds(savedVisits, visitIds);
+        });
+    }
+
+    /** Load a draft after its Activity is recreated, ex. after the app's process was stopped.
+     * Runs after any saves still waiting on the database thread.
+     *
+     * @param id The Place ID of the draft
+     * @param listener Receives the draft with its visits, or null if it no longer exists
+     */
+    void loadDraft(String id, ResultListener<PlaceModel> listener) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            PlaceWithVisits placeWithVisits = placeDao.getPlaceWithVisits(id);
+            postResult(listener, placeWithVisits == null ? null : placeWithVisits.toPlaceModel());
+        });
+    }
+
+    /** Show a draft at the end of the places list.
+     *
+     * @param id The Place ID of the draft
+     */
+    void publishDraft(String id) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            database.runInTransaction(() -> {
+                placeDao.publishDraft(id, placeDao.getNextPosition(), System.currentTimeMillis());
+            });
+        });
+    }
+
+    /** Delete a draft the user didn't add.
+     *
+     * @param id The Place ID of the draft
+     */
+    void deleteDraft(String id) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            placeDao.deleteDraft(id);
+        });
+    }
+
+    /** Delete drafts left behind, ex. if the app was stopped while a place was being added.
+     * Recent drafts are kept, since another screen may still be editing them,
+     * ex. when the widget opens the places list over the screen adding a place.
+     */
+    void deleteAbandonedDrafts() {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            placeDao.deleteDraftsSavedBefore(System.currentTimeMillis() - DRAFT_EXPIRY_MILLIS);
+        });
+    }
+
+    /** Move a place between two other places.
+     * Only the moved place's row is written, unless the positions around it
+     * have run out of room and have to be spread out first.
+     *
+     * @param id The Place ID of the moved place
+     * @param previousId The Place ID of the place now before it, or null if it's first
+     * @param nextId The Place ID of the place now after it, or null if it's last
+     */
+    void movePlace(String id, String previousId, String nextId) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+            long gap = placeDao.movePlaceBetween(id, previousId, nextId);
+            if (gap == PlaceDao.NO_GAP) {
+                // spread out positions and move the place in one transaction,
+                // so the places list is only reloaded once
+                database.runInTransaction(() -> {
+                    placeDao.spreadOutPositions();
+                    placeDao.movePlaceBetween(id, previousId, nextId);
+                });
+            } else if (gap < MIN_POSITION_GAP) {
+                // spread out positions after this move is shown,
+                // before the gaps run out
+                PlaceRoomDatabase.databaseWriteExecutor.execute(placeDao::spreadOutPositions);
+            }
+        });
+    }
+
+    // the largest size to fetch a photo at, since savePhoto scales photos down to it
+    int getMaxPhotoWidth() {
+        return photoIngest.getMaxWidth();
+    }
+
+    int getMaxPhotoHeight() {
+        return photoIngest.getMaxHeight();
+    }
+
+    /** Save a place's photo and its thumbnail to files and set the place's photo to them.
+     * The photo is scaled down and compressed, and its thumbnail made,
+     * on the photo ingest thread first.
+     * The place's previous photo file is deleted if no other place uses it.
+     *
+     * @param placeId The Place ID of the place
+     * @param bitmap The photo fetched from the Places SDK
+     * @param attributions The attributions text of the photo
+     * @param photoReference Identifies the photo metadata the photo was fetched with,
+     *                       so a refresh doesn't fetch the same photo again
+     */
+    void savePhoto(String placeId, Bitmap bitmap, String attributions, String photoReference) {
+        PhotoIngest.ingestExecutor.execute(() -> {
+            PhotoIngest.EncodedPhoto encodedPhoto = photoIngest.encode(bitmap);
+            PhotoIngest.EncodedPhoto thumbnail = photoIngest.encodeThumbnail(bitmap);
+            // Files are saved and deleted on the database thread,
+            // so a photo file is never deleted while a place is being set to it
+            PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+                photoWriter.save(placeId, encodedPhoto, thumbnail, attributions, photoReference);
+            });
+        });
+    }
+
+    /** Insert a place after the last place in the list, along with its visits.
+     * Must be called inside a transaction on a non-UI thread.
+     *
+     * @param place The place to insert
+     */
+    private void insertAtEnd(PlaceModel place) {
+        place.setPosition(placeDao.getNextPosition());
+        place.setAddedAt(System.currentTimeMillis());
+        placeDao.insert(place);
+        // the new place isn't edited, so its Visits aren't given their row IDs
+        saveVisits(place.getPlaceId(), copyVisits(place.getPlaceId(), place.getVisits()));
+    }
+
+    // Read every saved place name on the index thread and replace the index if they changed.
+    // Most changes to place_table are visits, photos, and refreshes that keep every name,
+    // so the names are compared before building a new index.
+    private void indexPlaceNames() {
+        if (isIndexingPlaceNames.compareAndSet(false, true)) {
+            placeNameIndexExecutor.execute(() -> {
+                // allow the next change to index again, since it may not be read below
+                isIndexingPlaceNames.set(false);
+                List<PlaceName> placeNames = placeDao.getPlaceNames();
+                if (!isSamePlaceNames(placeNames, indexedPlaceNames)) {
+                    placeNameIndex = PlaceNameIndex.build(placeNames);
+                    indexedPlaceNames = placeNames;
+                }
+            });
+        }
+    }
+
+    // both lists are in Place ID order
+    private static boolean isSamePlaceNames(List<PlaceName> placeNames, List<PlaceName> otherPlaceNames) {
+        if (placeNames.size() != otherPlaceNames.size()) {
+            return false;
+        }
+        for (int i = 0; i < placeNames.size(); i++) {
+            PlaceName place = placeNames.get(i);
+            PlaceName otherPlace = otherPlaceNames.get(i);
+            if (!place.getPlaceId().equals(otherPlace.getPlaceId())
+                    || !TextUtils.equals(place.getName(), otherPlace.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <T> void postResult(ResultListener<T> listener, T result) {
+        mainHandler.post(() -> listener.onResult(result));
+    }
+
+    // copy the values of a place's visits in their order, on the thread the user edits them on
+    private static List<VisitEntity> copyVisits(String placeId, List<Visit> visits) {
+        List<VisitEntity> visitCopies = new ArrayList<>(visits.size());
+        for (int i = 0; i < visits.size(); i++) {
+            visitCopies.add(VisitEntity.fromVisit(placeId, visits.get(i), i));
+        }
+        return visitCopies;
+    }
+
+    // Give each saved Visit the row ID it was saved with, on the main thread where it's edited,
+    // so saving the same Visit again updates its row instead of adding another.
+    // A save copied before the IDs arrive replaces the rows it doesn't know, so there's still
+    // one row per visit.
+    private void postVisitIds(List<Visit> savedVisits, long[] visitIds) {
+        postResult(ids -> {
+            for (int i = 0; i < ids.length; i++) {
+                savedVisits.get(i).setId(ids[i]);
+            }
+        }, visitIds);
+    }
+
+    /** Make a place's visit rows match its visit list, writing only the visits that changed.
+     * New visits are appended, edited or moved visits are updated,
+     * and visits no longer in the list are deleted.
+     * The place's visit count and last visit are updated to match.
+     * <p></p>
+     * Must be called inside a transaction on a non-UI thread.
+     *
+     * @param placeId The Place ID of the place
+     * @param visits Copies of the place's visits in the order the user arranged them
+     * @return The row ID of each visit, in the same order
+     */
+    private long[] saveVisits(String placeId, List<VisitEntity> visits) {
+        // map the visits already in the database by their row ID
+        Map<Long, VisitEntity> storedVisits = new HashMap<>();
+        for (VisitEntity storedVisit : visitDao.getVisitsForPlace(placeId)) {
+            storedVisits.put(storedVisit.getVisitId(), storedVisit);
+        }
+
+        long[] visitIds = new long[visits.size()];
+        for (int i = 0; i < visits.size(); i++) {
+            VisitEntity visit = visits.get(i);
+            VisitEntity storedVisit = storedVisits.remove(visit.getVisitId());
+            if (storedVisit == null) {
+                // let Room generate a new row ID, which is returned for the Visit
+                visit.setVisitId(0);
+                visit.setVisitId(visitDao.insert(visit));
+            } else if (!storedVisit.hasSameValues(visit)) {
+                visitDao.update(visit);
+            }
+            visitIds[i] = visit.getVisitId();
+        }
+
+        // any visits left were removed from the list
+        for (VisitEntity removedVisit : storedVisits.values()) {
+            visitDao.delete(removedVisit);
+        }
+
+        // save the count and last visit in the same transaction as the visits
+        Long lastVisitAt = null;
+        for (VisitEntity visit : visits) {
+            if (lastVisitAt == null || visit.getVisitedAt() > lastVisitAt) {
+                lastVisitAt = visit.getVisitedAt();
+            }
+        }
+        placeDao.updateVisitStats(placeId, visits.size(), lastVisitAt);
+        return visitIds;
+    }
+
 }
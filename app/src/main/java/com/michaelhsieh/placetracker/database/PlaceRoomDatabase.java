@@ -2,7 +2,12 @@ package com.michaelhsieh.placetracker.database;
 
 import android.content.Context;
 
+import com.michaelhsieh.placetracker.models.PlaceFts;
 import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.RefreshQueueEntry;
+import com.michaelhsieh.placetracker.models.VisitEntity;
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -10,13 +15,16 @@ import java.util.concurrent.Executors;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
-import androidx.room.TypeConverters;
 
-@Database(entities = {PlaceModel.class}, version = 1, exportSchema = false)
-@TypeConverters({VisitTypeConverter.class})
+@Database(entities = {PlaceModel.class, VisitEntity.class, PlaceFts.class, RefreshQueueEntry.class},
+        version = 12, exportSchema = false)
 public abstract class PlaceRoomDatabase extends RoomDatabase {
     public abstract PlaceDao placeDao();
 
+    public abstract VisitDao visitDao();
+
+    public abstract RefreshDao refreshDao();
+
     private static final String DATABASE_NAME = "place_database";
 
     // an instance of the PlaceRoomDatabase
@@ -34,7 +42,24 @@ public abstract class PlaceRoomDatabase extends RoomDatabase {
                     // Creating new database instance
                     placeRoomInstance = Room.databaseBuilder(context.getApplicationContext(),
                             PlaceRoomDatabase.class, DATABASE_NAME)
+                            .addMigrations(PlaceMigrations.MIGRATION_1_2,
+                                    PlaceMigrations.MIGRATION_2_3,
+                                    PlaceMigrations.MIGRATION_3_4,
+                                    PlaceMigrations.MIGRATION_4_5,
+                                    PlaceMigrations.MIGRATION_5_6,
+                                    PlaceMigrations.MIGRATION_6_7,
+                                    PlaceMigrations.MIGRATION_7_8,
+                                    PlaceMigrations.MIGRATION_8_9,
+                                    PlaceMigrations.MIGRATION_9_10,
+                                    PlaceMigrations.MIGRATION_10_11,
+                                    PlaceMigrations.MIGRATION_11_12)
                             .build();
+                    // move photos saved as Base64 Strings out of the database
+                    databaseWriteExecutor.execute(new Base64PhotoMigration(placeRoomInstance,
+                            new PhotoStore(context)));
+                    // then make thumbnails of photos that don't have one
+                    databaseWriteExecutor.execute(new ThumbnailBackfill(placeRoomInstance,
+                            new PhotoStore(context), new PhotoIngest(context)));
                 }
             }
         }
@@ -0,0 +1,162 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+import androidx.room.InvalidationTracker;
+
+/** Loads the places found by a search a page at a time, places with the words in their name first,
+ * then places with the words only in their address or notes, each in list order.
+ * <p></p>
+ * Each page continues from the last place loaded, so a page only reads the places it shows.
+ * The places found are never counted, so the PagedList has no placeholders and grows
+ * as it's scrolled. Like Room's DataSources, it's invalidated whenever place_table changes.
+ */
+final class PlaceSearchDataSource extends ItemKeyedDataSource<PlaceSearchDataSource.Key, PlaceSummary> {
+
+    // the first and last keys of a group of places, since positions are longs
+    private static final Key FIRST_NAME_MATCH = new Key(true, Long.MIN_VALUE, "");
+    private static final Key FIRST_OTHER_MATCH = new Key(false, Long.MIN_VALUE, "");
+    private static final Key LAST_NAME_MATCH = new Key(true, Long.MAX_VALUE, "");
+
+    private final PlaceDao placeDao;
+    private final PlaceSearchQuery query;
+    // the places loaded that have the words in their name, to find the group of each key
+    private final Set<String> nameMatchPlaceIds = Collections.synchronizedSet(new HashSet<String>());
+
+    private PlaceSearchDataSource(final PlaceRoomDatabase database, PlaceSearchQuery query) {
+        placeDao = database.placeDao();
+        this.query = query;
+
+        final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("place_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        database.getInvalidationTracker().addObserver(observer);
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                database.getInvalidationTracker().removeObserver(observer);
+            }
+        });
+    }
+
+    /** Key of a place found by the search: its group, then its position and Place ID in the list.
+     *
+     */
+    static final class Key {
+        private final boolean isNameMatch;
+        private final long position;
+        private final String placeId;
+
+        Key(boolean isNameMatch, long position, String placeId) {
+            this.isNameMatch = isNameMatch;
+            this.position = position;
+            this.placeId = placeId;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Key getKey(@NonNull PlaceSummary place) {
+        return new Key(nameMatchPlaceIds.contains(place.getPlaceId()), place.getPosition(), place.getPlaceId());
+    }
+
+    // Starts at the place that was near the top of the screen before the list changed,
+    // with half a page before it, so the list doesn't jump back to the first place found.
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<Key> params,
+                            @NonNull LoadInitialCallback<PlaceSummary> callback) {
+        Key key = params.requestedInitialKey;
+        if (key == null) {
+            callback.onResult(loadFrom(FIRST_NAME_MATCH, true, params.requestedLoadSize));
+            return;
+        }
+        List<PlaceSummary> places = loadBefore(key, params.requestedLoadSize / 2);
+        Collections.reverse(places);
+        places.addAll(loadFrom(key, true, params.requestedLoadSize - places.size()));
+        callback.onResult(places);
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<Key> params, @NonNull LoadCallback<PlaceSummary> callback) {
+        callback.onResult(loadFrom(params.key, false, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<Key> params, @NonNull LoadCallback<PlaceSummary> callback) {
+        List<PlaceSummary> places = loadBefore(params.key, params.requestedLoadSize);
+        Collections.reverse(places);
+        callback.onResult(places);
+    }
+
+    // the places after a key in search order, continuing into the places found only in
+    // their address or notes once the name matches run out
+    private List<PlaceSummary> loadFrom(Key key, boolean inclusive, int limit) {
+        List<PlaceSummary> places = new ArrayList<>(limit);
+        if (key.isNameMatch) {
+            places.addAll(placeDao.searchNameMatchesAfter(query.matchName(), key.position, key.placeId,
+                    inclusive, limit));
+            for (PlaceSummary place : places) {
+                nameMatchPlaceIds.add(place.getPlaceId());
+            }
+            if (places.size() == limit) {
+                return places;
+            }
+            key = FIRST_OTHER_MATCH;
+            inclusive = true;
+        }
+        places.addAll(placeDao.searchOtherMatchesAfter(query.matchAnyColumn(), query.matchName(),
+                key.position, key.placeId, inclusive, limit - places.size()));
+        return places;
+    }
+
+    // the places before a key in search order, nearest first
+    private List<PlaceSummary> loadBefore(Key key, int limit) {
+        List<PlaceSummary> places = new ArrayList<>(limit);
+        if (!key.isNameMatch) {
+            places.addAll(placeDao.searchOtherMatchesBefore(query.matchAnyColumn(), query.matchName(),
+                    key.position, key.placeId, limit));
+            if (places.size() == limit) {
+                return places;
+            }
+            key = LAST_NAME_MATCH;
+        }
+        List<PlaceSummary> nameMatches = placeDao.searchNameMatchesBefore(query.matchName(),
+                key.position, key.placeId, limit - places.size());
+        for (PlaceSummary place : nameMatches) {
+            nameMatchPlaceIds.add(place.getPlaceId());
+        }
+        places.addAll(nameMatches);
+        return places;
+    }
+
+    /** Creates a PlaceSearchDataSource for each version of the places list.
+     *
+     */
+    static final class Factory extends DataSource.Factory<Key, PlaceSummary> {
+        private final PlaceRoomDatabase database;
+        private final PlaceSearchQuery query;
+
+        Factory(PlaceRoomDatabase database, PlaceSearchQuery query) {
+            this.database = database;
+            this.query = query;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<Key, PlaceSummary> create() {
+            return new PlaceSearchDataSource(database, query);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.michaelhsieh.placetracker.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Turns the text the user types into the search bar into FTS MATCH queries for place_fts.
+ * <p></p>
+ * Each word of the text is searched as a prefix, so places are found while the user is
+ * still typing a word. Punctuation is dropped, so the text can't be read as FTS query syntax.
+ */
+final class PlaceSearchQuery {
+
+    // Words shorter than this are skipped.
+    // A single letter is the start of almost every place's notes, so it wouldn't narrow the search.
+    static final int MIN_WORD_LENGTH = 2;
+
+    private final List<String> words;
+
+    private PlaceSearchQuery(List<String> words) {
+        this.words = words;
+    }
+
+    /** Get the words of the user's search text.
+     *
+     * @param text The text typed into the search bar
+     * @return The query, or null if the text has no words long enough to search
+     */
+    static PlaceSearchQuery parse(String text) {
+        List<String> words = new ArrayList<>();
+        if (text != null) {
+            StringBuilder word = new StringBuilder();
+            // add a space so the last word is added too
+            String paddedText = text.toLowerCase(Locale.ROOT) + " ";
+            for (int i = 0; i < paddedText.length(); i++) {
+                char c = paddedText.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(c);
+                } else {
+                    if (word.length() >= MIN_WORD_LENGTH) {
+                        words.add(word.toString());
+                    }
+                    word.setLength(0);
+                }
+            }
+        }
+        return words.isEmpty() ? null : new PlaceSearchQuery(words);
+    }
+
+    /** Get a MATCH query for places with every word in their name, address, or notes,
+     * ex. pizza* ma* for "Pizza Ma".
+     *
+     * @return The MATCH query
+     */
+    String matchAnyColumn() {
+        return join(null);
+    }
+
+    /** Get a MATCH query for places with every word in their name,
+     * ex. name:pizza* name:ma* for "Pizza Ma".
+     *
+     * @return The MATCH query
+     */
+    String matchName() {
+        return join("name");
+    }
+
+    private String join(String column) {
+        StringBuilder query = new StringBuilder();
+        for (String word : words) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            if (column != null) {
+                query.append(column).append(':');
+            }
+            query.append(word).append('*');
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.michaelhsieh.placetracker.database;
+
+/** The orders the places list can be sorted in.
+ * Each order is read straight from an index of place_table,
+ * so switching orders doesn't sort the places in memory.
+ */
+public enum PlaceSort {
+    // the order the user arranged with drag and drop
+    MANUAL,
+    MOST_VISITED,
+    RECENTLY_VISITED,
+    // places never visited come first
+    LEAST_RECENTLY_VISITED,
+    ALPHABETICAL,
+    RECENTLY_ADDED;
+
+    /** Get a sort order saved by its name, ex. in SharedPreferences.
+     *
+     * @param name The name of the sort order, or null if none was saved
+     * @return The sort order, or MANUAL if the name isn't a sort order
+     */
+    static PlaceSort fromName(String name) {
+        if (name != null) {
+            for (PlaceSort sort : values()) {
+                if (sort.name().equals(name)) {
+                    return sort;
+                }
+            }
+        }
+        return MANUAL;
+    }
+}
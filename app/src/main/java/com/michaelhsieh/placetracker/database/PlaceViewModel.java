@@ -1,46 +1,162 @@
 package com.michaelhsieh.placetracker.database;
 
 import android.app.Application;
+import android.graphics.Bitmap;
 
 import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+import com.michaelhsieh.placetracker.models.RefreshProgress;
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
 
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.PagedList;
 
 public class PlaceViewModel extends AndroidViewModel {
 
     private PlaceRepository repository;
 
-    private LiveData<List<PlaceModel>> allPlaces;
+    private LiveData<PagedList<PlaceSummary>> placeSummaries;
 
+    // the text typed into the search bar
+    private MutableLiveData<String> searchText = new MutableLiveData<>();
+
+    // places found by searching for searchText, which are searched again whenever it changes
+    private LiveData<PagedList<PlaceSummary>> searchResults;
 
     public PlaceViewModel(@NonNull Application application) {
         super(application);
         repository = new PlaceRepository(application);
-        allPlaces = repository.getAllPlaces();
+        placeSummaries = repository.getPlaceSummaries();
+        searchResults = Transformations.switchMap(searchText,
+                new Function<String, LiveData<PagedList<PlaceSummary>>>() {
+                    @Override
+                    public LiveData<PagedList<PlaceSummary>> apply(String text) {
+                        return repository.searchPlaceSummaries(text);
+                    }
+                });
+    }
+
+    public LiveData<PagedList<PlaceSummary>> getPlaceSummaries() {
+        return placeSummaries;
+    }
+
+    public LiveData<PlaceSort> getPlaceSort() {
+        return repository.getPlaceSort();
+    }
+
+    public void setPlaceSort(PlaceSort sort) {
+        repository.setPlaceSort(sort);
+    }
+
+    /** Start indexing the names of saved places in the background, and keep the index
+     * up to date until this ViewModel is cleared.
+     */
+    public void watchPlaceNames() {
+        repository.watchPlaceNames();
+    }
+
+    /** Get the names of saved places to suggest while the user types.
+     *
+     * @return The latest index of saved place names, which is empty until watchPlaceNames is called
+     */
+    public PlaceNameIndex getPlaceNameIndex() {
+        return repository.getPlaceNameIndex();
     }
 
-    public LiveData<List<PlaceModel>> getAllPlaces() {
-        return allPlaces;
+    public LiveData<PagedList<PlaceSummary>> getSearchResults() {
+        return searchResults;
+    }
+
+    public void setSearchText(String text) {
+        // don't search again if only ex. the keyboard was closed
+        if (!text.equals(searchText.getValue())) {
+            searchText.setValue(text);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        repository.stopWatchingPlaceNames();
+    }
+
+    public void loadRandomPlace(PlaceRepository.ResultListener<PlaceSummary> listener) {
+        repository.loadRandomPlace(listener);
+    }
+
+    public LiveData<RefreshProgress> getRefreshProgress() {
+        return repository.getRefreshProgress();
     }
 
     public LiveData<PlaceModel> getPlaceById(String id) {
         return repository.getPlaceById(id);
     }
 
-    public void insert(PlaceModel place) {
-        repository.insert(place);
+    public void insertIfNew(PlaceModel place, PlaceRepository.ResultListener<Boolean> listener) {
+        repository.insertIfNew(place, listener);
+    }
+
+    public void deletePlaceById(String id) {
+        repository.deletePlaceById(id);
+    }
+
+    public void updateNameAndAddress(String id, String name, String address) {
+        repository.updateNameAndAddress(id, name, address);
+    }
+
+    public void updateNotes(String id, String notes) {
+        repository.updateNotes(id, notes);
+    }
+
+    public void updateVisits(String id, List<Visit> visits) {
+        repository.updateVisits(id, visits);
+    }
+
+    public void insertDraft(PlaceModel place) {
+        repository.insertDraft(place);
+    }
+
+    public void saveDraft(PlaceModel place) {
+        repository.saveDraft(place);
+    }
+
+    public void loadDraft(String id, PlaceRepository.ResultListener<PlaceModel> listener) {
+        repository.loadDraft(id, listener);
+    }
+
+    public void publishDraft(String id) {
+        repository.publishDraft(id);
+    }
+
+    public void deleteDraft(String id) {
+        repository.deleteDraft(id);
+    }
+
+    public void deleteAbandonedDrafts() {
+        repository.deleteAbandonedDrafts();
+    }
+
+    public void movePlace(String id, String previousId, String nextId) {
+        repository.movePlace(id, previousId, nextId);
+    }
+
+    public int getMaxPhotoWidth() {
+        return repository.getMaxPhotoWidth();
     }
 
-    public void delete(PlaceModel place) {
-        repository.delete(place);
+    public int getMaxPhotoHeight() {
+        return repository.getMaxPhotoHeight();
     }
 
-    public void update(PlaceModel place) {
-        repository.update(place);
+    public void savePhoto(String placeId, Bitmap bitmap, String attributions, String photoReference) {
+        repository.savePhoto(placeId, bitmap, attributions, photoReference);
     }
 
 }
@@ -0,0 +1,261 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.michaelhsieh.placetracker.models.PlaceNameAndAddress;
+import com.michaelhsieh.placetracker.models.QueuedPlace;
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Saves the progress of a refresh of the places list in the refresh_queue,
+ * so a refresh stopped ex. when the app's process is killed resumes where it left off
+ * instead of starting over.
+ * <p></p>
+ * Each place is marked done in the same transaction that saves its refreshed info,
+ * so a place that was saved is never fetched again by the same refresh.
+ * Writes run on the database thread, like the rest of the app's writes.
+ * <p></p>
+ * Places that are refreshed while the database thread is busy are saved together
+ * in one transaction, and only the places whose name or address changed are written.
+ * If a transaction fails, every place in it is reported as not saved, and the places
+ * after it are still saved.
+ */
+public class RefreshCheckpoint {
+
+    private static final String TAG = RefreshCheckpoint.class.getSimpleName();
+
+    // most places saved in one transaction, below SQLite's limit of 999 query arguments
+    private static final int MAX_SAVED_PLACES = 500;
+
+    private final PlaceRoomDatabase database;
+    private final PlaceDao placeDao;
+    private final RefreshDao refreshDao;
+    private final PhotoIngest photoIngest;
+    private final PlacePhotoWriter photoWriter;
+
+    // refreshed places waiting for the database thread
+    private final Queue<RefreshedPlace> unsavedPlaces = new ConcurrentLinkedQueue<>();
+    // whether saving is waiting on the database thread,
+    // so places refreshed in a row are saved together
+    private final AtomicBoolean isSavingPlaces = new AtomicBoolean();
+
+    public RefreshCheckpoint(Context context) {
+        this(PlaceRoomDatabase.getDatabase(context), new PhotoIngest(context), new PhotoStore(context));
+    }
+
+    // ex. to save to an in-memory database in tests
+    RefreshCheckpoint(PlaceRoomDatabase database, PhotoIngest photoIngest, PhotoStore photoStore) {
+        this.database = database;
+        placeDao = database.placeDao();
+        refreshDao = database.refreshDao();
+        this.photoIngest = photoIngest;
+        photoWriter = new PlacePhotoWriter(placeDao, photoStore);
+    }
+
+    /** Queue the stale places if no refresh is in progress, then get the places that aren't done.
+     * Must be called on a non-UI thread, and waits for the database thread.
+     *
+     * @param staleBefore Places last refreshed before this time, in milliseconds since the epoch,
+     *                    are queued
+     * @return The places left to refresh
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public List<QueuedPlace> startOrResume(final long staleBefore) throws InterruptedException {
+        return runOnDatabaseThread(() -> database.runInTransaction(() -> {
+            if (refreshDao.countQueued() == 0) {
+                refreshDao.queueStalePlaces(staleBefore);
+            }
+            return refreshDao.getPendingPlaces();
+        }));
+    }
+
+    // the largest size to fetch a photo at, since photos are scaled down to it
+    public int getMaxPhotoWidth() {
+        return photoIngest.getMaxWidth();
+    }
+
+    public int getMaxPhotoHeight() {
+        return photoIngest.getMaxHeight();
+    }
+
+    /** Receives whether a refreshed place was saved, on a background thread.
+     *
+     */
+    public interface SaveCallback {
+        void onSaved();
+
+        void onSaveFailed(Exception exception);
+    }
+
+    /** Save a place's refreshed name, address, and photo, and mark the place done.
+     * The photo is compressed on the photo ingest thread first, then the place is saved
+     * together with the other places waiting for the database thread.
+     *
+     * @param placeId The Place ID of the place
+     * @param name The refreshed name
+     * @param address The refreshed address
+     * @param photo The refreshed photo, or null to keep the place's photo
+     * @param attributions The attributions text of the photo
+     * @param photoReference Identifies the photo metadata the photo was fetched with
+     * @param callback Called once, when the place is saved or saving it failed
+     */
+    public void saveRefreshedPlace(final String placeId, final String name, final String address,
+                                   final Bitmap photo, final String attributions,
+                                   final String photoReference, final SaveCallback callback) {
+        final PlaceNameAndAddress info = new PlaceNameAndAddress(placeId, name, address);
+        if (photo == null) {
+            queueSave(new RefreshedPlace(info, null, null, null, null, callback));
+            return;
+        }
+        PhotoIngest.ingestExecutor.execute(() -> {
+            PhotoIngest.EncodedPhoto encodedPhoto;
+            PhotoIngest.EncodedPhoto thumbnail;
+            try {
+                encodedPhoto = photoIngest.encode(photo);
+                thumbnail = photoIngest.encodeThumbnail(photo);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Couldn't compress refreshed photo of place " + placeId, e);
+                callback.onSaveFailed(e);
+                return;
+            }
+            queueSave(new RefreshedPlace(info, encodedPhoto, thumbnail, attributions, photoReference,
+                    callback));
+        });
+    }
+
+    /** Mark a place done without changing it, ex. when its Place ID isn't found.
+     *
+     * @param placeId The Place ID of the place
+     */
+    public void markDone(final String placeId) {
+        PlaceRoomDatabase.databaseWriteExecutor.execute(() -> refreshDao.markDone(placeId));
+    }
+
+    /** Empty the queue once the refresh is finished.
+     * Must be called on a non-UI thread, and waits for the database thread,
+     * so the places saved before it are saved first.
+     *
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public void finish() throws InterruptedException {
+        runOnDatabaseThread(() -> {
+            refreshDao.clear();
+            return null;
+        });
+    }
+
+    private void queueSave(RefreshedPlace place) {
+        unsavedPlaces.add(place);
+        if (isSavingPlaces.compareAndSet(false, true)) {
+            PlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+                // allow the next place to queue a save, since it may not be taken below
+                isSavingPlaces.set(false);
+                List<RefreshedPlace> places = new ArrayList<>();
+                RefreshedPlace unsavedPlace;
+                while ((unsavedPlace = unsavedPlaces.poll()) != null) {
+                    places.add(unsavedPlace);
+                    if (places.size() == MAX_SAVED_PLACES) {
+                        savePlaces(places);
+                        places.clear();
+                    }
+                }
+                if (!places.isEmpty()) {
+                    savePlaces(places);
+                }
+            });
+        }
+    }
+
+    /** Save refreshed places in one transaction and mark them done.
+     * The places are saved as refreshed now, so they aren't fetched again until they're stale.
+     * If the transaction fails, none of the places are saved and each one's callback is told.
+     * Must be called on the database thread.
+     */
+    private void savePlaces(List<RefreshedPlace> places) {
+        final long refreshedAt = System.currentTimeMillis();
+        final List<String> placeIds = new ArrayList<>(places.size());
+        List<PlaceNameAndAddress> refreshedInfo = new ArrayList<>(places.size());
+        for (RefreshedPlace place : places) {
+            placeIds.add(place.info.getPlaceId());
+            refreshedInfo.add(place.info);
+        }
+
+        try {
+            database.runInTransaction(() -> {
+                saveInTransaction(places, placeIds, refreshedInfo, refreshedAt);
+            });
+        } catch (RuntimeException e) {
+            // ex. the disk is full
+            Log.e(TAG, "Couldn't save " + places.size() + " refreshed places", e);
+            for (RefreshedPlace place : places) {
+                place.callback.onSaveFailed(e);
+            }
+            return;
+        }
+
+        for (RefreshedPlace place : places) {
+            place.callback.onSaved();
+        }
+    }
+
+    // must be called inside a transaction on the database thread
+    private void saveInTransaction(List<RefreshedPlace> places, List<String> placeIds,
+                                   List<PlaceNameAndAddress> refreshedInfo, long refreshedAt) {
+        RefreshMerge merge = RefreshMerge.of(placeDao.getNamesAndAddresses(placeIds), refreshedInfo);
+        for (PlaceNameAndAddress changedPlace : merge.getChangedPlaces()) {
+            placeDao.updateRefreshedInfo(changedPlace.getPlaceId(), changedPlace.getName(),
+                    changedPlace.getAddress(), refreshedAt);
+        }
+        if (!merge.getUnchangedPlaceIds().isEmpty()) {
+            placeDao.updateLastRefreshedAt(merge.getUnchangedPlaceIds(), refreshedAt);
+        }
+        for (RefreshedPlace place : places) {
+            // don't save the files of a place deleted during the refresh
+            if (place.encodedPhoto != null && merge.isSaved(place.info.getPlaceId())) {
+                photoWriter.save(place.info.getPlaceId(), place.encodedPhoto, place.thumbnail,
+                        place.attributions, place.photoReference);
+            }
+        }
+        refreshDao.markAllDone(placeIds);
+    }
+
+    private static <T> T runOnDatabaseThread(Callable<T> task) throws InterruptedException {
+        try {
+            return PlaceRoomDatabase.databaseWriteExecutor.submit(task).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // a refreshed place and its compressed photo, waiting to be saved
+    private static class RefreshedPlace {
+        final PlaceNameAndAddress info;
+        // null to keep the place's photo
+        final PhotoIngest.EncodedPhoto encodedPhoto;
+        final PhotoIngest.EncodedPhoto thumbnail;
+        final String attributions;
+        final String photoReference;
+        final SaveCallback callback;
+
+        RefreshedPlace(PlaceNameAndAddress info, PhotoIngest.EncodedPhoto encodedPhoto,
+                       PhotoIngest.EncodedPhoto thumbnail, String attributions, String photoReference,
+                       SaveCallback callback) {
+            this.info = info;
+            this.encodedPhoto = encodedPhoto;
+            this.thumbnail = thumbnail;
+            this.attributions = attributions;
+            this.photoReference = photoReference;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.QueuedPlace;
+import com.michaelhsieh.placetracker.models.RefreshProgress;
+
+import java.util.List;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+/** Reads and writes the queue of places being refreshed, which is the refresh's checkpoint.
+ */
+@Dao
+public interface RefreshDao {
+    // Queue the places last refreshed before a time, found with the index of
+    // is_manual and last_refreshed_at. Manual places and drafts can't be refreshed,
+    // so they're never queued.
+    @Query("INSERT OR IGNORE INTO refresh_queue (place_id, is_done) "
+            + "SELECT place_id, 0 FROM place_table WHERE is_manual = 0 AND last_refreshed_at < :staleBefore")
+    void queueStalePlaces(long staleBefore);
+
+    @Query("SELECT COUNT(*) FROM refresh_queue")
+    int countQueued();
+
+    // a place deleted since it was queued is still returned, and fails to update
+    @Query("SELECT refresh_queue.place_id, place_table.photo_reference FROM refresh_queue "
+            + "LEFT JOIN place_table ON place_table.place_id = refresh_queue.place_id "
+            + "WHERE refresh_queue.is_done = 0")
+    List<QueuedPlace> getPendingPlaces();
+
+    @Query("UPDATE refresh_queue SET is_done = 1 WHERE place_id = :placeId")
+    void markDone(String placeId);
+
+    @Query("UPDATE refresh_queue SET is_done = 1 WHERE place_id IN (:placeIds)")
+    void markAllDone(List<String> placeIds);
+
+    @Query("DELETE FROM refresh_queue")
+    void clear();
+
+    @Query("SELECT COUNT(*) AS total, IFNULL(SUM(is_done), 0) AS done FROM refresh_queue")
+    LiveData<RefreshProgress> getProgress();
+}
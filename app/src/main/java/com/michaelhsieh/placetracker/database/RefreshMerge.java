@@ -0,0 +1,75 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.PlaceNameAndAddress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Decides which refreshed places need their name and address written,
+ * by joining them with the saved places on their Place ID.
+ * <p></p>
+ * The saved places are put in a map by Place ID first, so each refreshed place
+ * is matched with one lookup instead of a search through every saved place.
+ */
+final class RefreshMerge {
+
+    // the saved places by Place ID
+    private final Map<String, PlaceNameAndAddress> savedPlaces;
+    private final List<PlaceNameAndAddress> changedPlaces = new ArrayList<>();
+    private final List<String> unchangedPlaceIds = new ArrayList<>();
+
+    private RefreshMerge(Map<String, PlaceNameAndAddress> savedPlaces) {
+        this.savedPlaces = savedPlaces;
+    }
+
+    /** Join refreshed places with the saved places.
+     * A refreshed place that isn't saved anymore, ex. deleted during the refresh,
+     * is neither changed nor unchanged.
+     *
+     * @param savedPlaces The saved places, in any order
+     * @param refreshedPlaces The places fetched again
+     * @return The merge, to get the changed and unchanged places from
+     */
+    static RefreshMerge of(List<PlaceNameAndAddress> savedPlaces,
+                           List<PlaceNameAndAddress> refreshedPlaces) {
+        Map<String, PlaceNameAndAddress> savedPlacesById = new HashMap<>(savedPlaces.size() * 2);
+        for (PlaceNameAndAddress savedPlace : savedPlaces) {
+            savedPlacesById.put(savedPlace.getPlaceId(), savedPlace);
+        }
+
+        RefreshMerge merge = new RefreshMerge(savedPlacesById);
+        for (PlaceNameAndAddress refreshedPlace : refreshedPlaces) {
+            PlaceNameAndAddress savedPlace = savedPlacesById.get(refreshedPlace.getPlaceId());
+            if (savedPlace == null) {
+                continue;
+            }
+            if (equals(savedPlace.getName(), refreshedPlace.getName())
+                    && equals(savedPlace.getAddress(), refreshedPlace.getAddress())) {
+                merge.unchangedPlaceIds.add(refreshedPlace.getPlaceId());
+            } else {
+                merge.changedPlaces.add(refreshedPlace);
+            }
+        }
+        return merge;
+    }
+
+    // the refreshed places whose name or address is different from the saved one
+    List<PlaceNameAndAddress> getChangedPlaces() {
+        return changedPlaces;
+    }
+
+    // the Place IDs of refreshed places with the same name and address as saved
+    List<String> getUnchangedPlaceIds() {
+        return unchangedPlaceIds;
+    }
+
+    boolean isSaved(String placeId) {
+        return savedPlaces.containsKey(placeId);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,65 @@
+package com.michaelhsieh.placetracker.database;
+
+import android.util.Log;
+
+import com.michaelhsieh.placetracker.models.PlacePhoto;
+import com.michaelhsieh.placetracker.photo.PhotoIngest;
+import com.michaelhsieh.placetracker.photo.PhotoStore;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Makes thumbnails of photos saved before thumbnails were made, in the background.
+ * <p></p>
+ * Runs on the database thread, which only finds the photos without a thumbnail.
+ * Each thumbnail is made on the photo ingest thread, then saved on the database thread,
+ * the same way as the thumbnail of a newly fetched photo.
+ * If the app is closed before finishing, the remaining thumbnails are made next time.
+ */
+class ThumbnailBackfill implements Runnable {
+
+    private static final String TAG = ThumbnailBackfill.class.getSimpleName();
+
+    private final PlaceDao placeDao;
+    private final PhotoStore photoStore;
+    private final PhotoIngest photoIngest;
+
+    ThumbnailBackfill(PlaceRoomDatabase database, PhotoStore photoStore, PhotoIngest photoIngest) {
+        this.placeDao = database.placeDao();
+        this.photoStore = photoStore;
+        this.photoIngest = photoIngest;
+    }
+
+    @Override
+    public void run() {
+        List<PlacePhoto> photos = placeDao.getPhotosWithoutThumbnail();
+        for (final PlacePhoto photo : photos) {
+            PhotoIngest.ingestExecutor.execute(() -> {
+                final PhotoIngest.EncodedPhoto thumbnail =
+                        photoIngest.encodeThumbnail(photoStore.getFile(photo.getPhotoPath()));
+                if (thumbnail == null) {
+                    Log.e(TAG, "Couldn't make thumbnail of place " + photo.getPlaceId());
+                    return;
+                }
+                PlaceRoomDatabase.databaseWriteExecutor.execute(() -> saveThumbnail(photo, thumbnail));
+            });
+        }
+    }
+
+    // must be called on the database thread
+    private void saveThumbnail(PlacePhoto photo, PhotoIngest.EncodedPhoto thumbnail) {
+        PhotoStore.StoredPhoto storedThumbnail;
+        try {
+            storedThumbnail = photoStore.saveThumbnail(thumbnail.getBytes(), thumbnail.getExtension());
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't save thumbnail of place " + photo.getPlaceId(), e);
+            return;
+        }
+        int updatedPlaces = placeDao.updateThumbnail(photo.getPlaceId(), photo.getPhotoHash(),
+                storedThumbnail.getPath());
+        if (updatedPlaces == 0 && placeDao.countPlacesWithThumbnail(storedThumbnail.getPath()) == 0) {
+            // the place was deleted or got a new photo while the thumbnail was made
+            photoStore.delete(storedThumbnail.getPath());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Encodes a list of Visits as compact bytes, ex. to save the visits a user is editing
+ * when the device is rotated.
+ * <p></p>
+ * The format is a version byte, then a table of the visits' time zone IDs, then for each visit
+ * the difference from the previous visit's time in milliseconds, the index of its time zone
+ * in the table, and its row ID. Numbers are written as varints, so a visit usually takes
+ * 6 to 8 bytes instead of the hundreds of bytes of its JSON form with a whole Calendar.
+ * <p></p>
+ * Version 1 of PlaceRoomDatabase saved visits as Gson JSON. Decoding still accepts that form.
+ */
+public final class VisitCodec {
+
+    // first byte of the current binary format.
+    // JSON starts with '[' or "null", so it can't be mistaken for this.
+    static final byte FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // read the legacy JSON with one Gson and list type instead of creating them on every read
+    private static final Gson gson = new Gson();
+    private static final Type LEGACY_VISIT_LIST_TYPE = new TypeToken<List<LegacyVisit>>() {}.getType();
+
+    private VisitCodec() {
+    }
+
+    /** Encode visits in the binary format.
+     *
+     * @param visits The visits in the order the user arranged them
+     * @return The encoded visits
+     */
+    public static byte[] encode(List<Visit> visits) {
+        // index of each time zone ID in the table, in the order first seen
+        Map<String, Integer> zoneIndexes = new HashMap<>();
+        List<String> zoneIds = new ArrayList<>();
+        int[] visitZoneIndexes = new int[visits.size()];
+        for (int i = 0; i < visits.size(); i++) {
+            String zoneId = visits.get(i).getTimeZone();
+            Integer zoneIndex = zoneIndexes.get(zoneId);
+            if (zoneIndex == null) {
+                zoneIndex = zoneIds.size();
+                zoneIndexes.put(zoneId, zoneIndex);
+                zoneIds.add(zoneId);
+            }
+            visitZoneIndexes[i] = zoneIndex;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + 8 * visits.size());
+        out.write(FORMAT_VERSION);
+        writeVarint(out, zoneIds.size());
+        for (String zoneId : zoneIds) {
+            if (zoneId == null) {
+                // unknown time zone
+                writeVarint(out, 0);
+                continue;
+            }
+            byte[] zoneIdBytes = zoneId.getBytes(UTF_8);
+            // length + 1, since 0 means null
+            writeVarint(out, zoneIdBytes.length + 1);
+            out.write(zoneIdBytes, 0, zoneIdBytes.length);
+        }
+
+        writeVarint(out, visits.size());
+        long previousMillis = 0;
+        for (int i = 0; i < visits.size(); i++) {
+            Visit visit = visits.get(i);
+            long millis = visit.getVisitedAt();
+            // visits can be in any order, so the difference can be negative
+            writeVarint(out, zigZag(millis - previousMillis));
+            writeVarint(out, visitZoneIndexes[i]);
+            writeVarint(out, visit.getId());
+            previousMillis = millis;
+        }
+        return out.toByteArray();
+    }
+
+    /** Decode visits saved in the binary format or as legacy JSON.
+     *
+     * @param data The encoded visits, or null
+     * @return The visits, or an empty list if data is null
+     * @throws IllegalArgumentException if the data isn't in a known format
+     */
+    public static List<Visit> decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return new ArrayList<>();
+        }
+        if (data[0] != FORMAT_VERSION) {
+            return decodeLegacyJson(new String(data, UTF_8));
+        }
+
+        Reader in = new Reader(data);
+        in.position = 1;
+        int zoneCount = (int) in.readVarint();
+        String[] zoneIds = new String[zoneCount];
+        for (int i = 0; i < zoneCount; i++) {
+            int lengthPlusOne = (int) in.readVarint();
+            if (lengthPlusOne > 0) {
+                int length = lengthPlusOne - 1;
+                if (in.position + length > data.length) {
+                    throw new IllegalArgumentException("Encoded visits end in the middle of a time zone");
+                }
+                // each time zone ID is only created once, and shared by its visits
+                zoneIds[i] = new String(data, in.position, length, UTF_8);
+                in.position += length;
+            }
+        }
+
+        int visitCount = (int) in.readVarint();
+        List<Visit> visits = new ArrayList<>(visitCount);
+        long millis = 0;
+        for (int i = 0; i < visitCount; i++) {
+            millis += unZigZag(in.readVarint());
+            int zoneIndex = (int) in.readVarint();
+            if (zoneIndex >= zoneCount) {
+                throw new IllegalArgumentException("Visit time zone " + zoneIndex
+                        + " is not in the table of " + zoneCount + " time zones");
+            }
+            Visit visit = new Visit(millis, zoneIds[zoneIndex]);
+            visit.setId(in.readVarint());
+            visits.add(visit);
+        }
+        return visits;
+    }
+
+    /** Decode visits saved as JSON by Gson, the way version 1 of PlaceRoomDatabase stored them.
+     *
+     * @param json The JSON array of visits, or null
+     * @return The visits, or an empty list if json is null
+     */
+    public static List<Visit> decodeLegacyJson(String json) {
+        if (json == null) {
+            return Collections.emptyList();
+        }
+        List<LegacyVisit> legacyVisits = gson.fromJson(json, LEGACY_VISIT_LIST_TYPE);
+        // a JSON null is read as a null list
+        if (legacyVisits == null) {
+            return Collections.emptyList();
+        }
+        List<Visit> visits = new ArrayList<>(legacyVisits.size());
+        for (LegacyVisit legacyVisit : legacyVisits) {
+            if (legacyVisit != null && legacyVisit.calendar != null) {
+                visits.add(new Visit(legacyVisit.calendar));
+            }
+        }
+        return visits;
+    }
+
+    /** Encode visits as JSON with Gson, the way version 1 of PlaceRoomDatabase stored them.
+     * Only used to compare against the binary format.
+     *
+     * @param visits The visits to encode
+     * @return The JSON array of visits
+     */
+    static String encodeLegacyJson(List<Visit> visits) {
+        List<LegacyVisit> legacyVisits = new ArrayList<>(visits.size());
+        for (Visit visit : visits) {
+            legacyVisits.add(new LegacyVisit(visit.getCalendar()));
+        }
+        return gson.toJson(legacyVisits, LEGACY_VISIT_LIST_TYPE);
+    }
+
+    /** A Visit the way version 1 of PlaceRoomDatabase saved it as JSON,
+     * with its whole Calendar and its date and time formatted when it was created.
+     * Gson sets the fields by reflection.
+     */
+    private static class LegacyVisit {
+        private Calendar calendar;
+        private String date;
+        private String time;
+
+        LegacyVisit(Calendar calendar) {
+            this.calendar = calendar;
+            Date visitDate = calendar.getTime();
+            this.time = DateFormat.getTimeInstance(DateFormat.SHORT).format(visitDate);
+            this.date = DateFormat.getDateInstance(DateFormat.FULL).format(visitDate);
+        }
+    }
+
+    // write an unsigned number 7 bits at a time, lowest bits first.
+    // The high bit of each byte is set if more bytes follow.
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // map signed numbers to unsigned so small negative numbers also take few bytes
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // reads varints from encoded visits
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (shift < 64) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Encoded visits end in the middle of a number");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+            throw new IllegalArgumentException("Encoded visits have a number longer than 64 bits");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.VisitEntity;
+
+import java.util.List;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+/** Reads and writes single visits, so logging a visit doesn't rewrite a place's whole history.
+ */
+@Dao
+public interface VisitDao {
+    // append a visit and return its generated row ID
+    @Insert
+    long insert(VisitEntity visit);
+
+    @Update
+    void update(VisitEntity visit);
+
+    @Delete
+    void delete(VisitEntity visit);
+
+    // get a place's visits in the order the user arranged them.
+    // Must be called on a non-UI thread.
+    @Query("SELECT * FROM visit_table WHERE place_id = :placeId ORDER BY position ASC")
+    List<VisitEntity> getVisitsForPlace(String placeId);
+}
@@ -0,0 +1,53 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/** Full-text search index of the name, address, and notes of each place.
+ * <p></p>
+ * The text is only stored in place_table. Room adds triggers that update this index
+ * whenever a place_table row is inserted, updated, or deleted, and the index's
+ * docid of each place is the rowid of its place_table row.
+ * <p></p>
+ * Words are also indexed by their first 2 and 3 letters, so a search for a short prefix,
+ * ex. "pi" while the user is typing "pizza", doesn't have to look through every word
+ * starting with those letters.
+ */
+@Fts4(contentEntity = PlaceModel.class, prefix = {2, 3})
+@Entity(tableName = "place_fts")
+public class PlaceFts {
+    private String name;
+    private String address;
+    private String notes;
+
+    public PlaceFts(String name, String address, String notes) {
+        this.name = name;
+        this.address = address;
+        this.notes = notes;
+    }
+
+    // Room requires all fields to have getters and setters
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+}
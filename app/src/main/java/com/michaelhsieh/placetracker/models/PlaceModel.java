@@ -1,8 +1,5 @@
 package com.michaelhsieh.placetracker.models;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
 
 import java.util.ArrayList;
@@ -11,6 +8,8 @@ import java.util.List;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /** Model class to hold place information. This is also the Entity for the Room database.
@@ -18,17 +17,23 @@ import androidx.room.PrimaryKey;
  * Google Places SDK.
  */
 
-// implement Parcelable to pass PlaceModel to detail screen using Intent
-/* Source: Jeremy Logan
-https://stackoverflow.com/questions/2139134/how-to-send-an-object-from-one-android-activity-to-another-using-intents?page=1&tab=votes#tab-top
- */
-@Entity(tableName = "place_table")
-public class PlaceModel implements Parcelable {
+// Each sort order of the places list has an index ending with place_id,
+// which breaks ties, so the list is read in index order without sorting.
+@Entity(tableName = "place_table",
+        indices = {@Index(value = {"position", "place_id"}),
+                @Index(value = {"visit_count", "place_id"}),
+                @Index(value = {"last_visit_at", "place_id"}),
+                @Index(value = {"name", "place_id"}),
+                @Index(value = {"added_at", "place_id"}),
+                @Index(value = {"is_manual", "last_refreshed_at"})})
+public class PlaceModel {
     // a place's unique Place ID, which is a String
     @PrimaryKey
     @NonNull
     @ColumnInfo(name = "place_id")
     private String placeId;
+    // compared ignoring case, so the places list sorts "apple" before "Zoo"
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
     private String name;
     private String address;
     // notes the user writes about the place
@@ -37,23 +42,80 @@ public class PlaceModel implements Parcelable {
 
     // each visit contains a day and a time
     // initialize visits
+    // Visits are stored as rows of visit_table, not in place_table
+    @Ignore
     private List<Visit> visits = new ArrayList<>();
 
+    /* The number of visits and the date and time of the most recent visit
+    in milliseconds since the epoch, or null if there are no visits.
+    These are saved with the visits, so the places list, widget, and sorting
+    can read them without reading visit_table. */
+    @ColumnInfo(name = "visit_count")
+    private int visitCount;
+    @ColumnInfo(name = "last_visit_at")
+    private Long lastVisitAt;
+
     /* The first photo available from the place.
-       Photos of the place are Bitmaps, but store the Bitmap as a Base64 String
-       in Room database to avoid transferring too much data
-       between Activities via Parcelable,
-       ex. large Bitmaps, and causing TransactionTooLarge exception,
-       which will crash the app. */
+       Photos used to be stored as Base64 Strings in the Room database.
+       This is only set for places saved before photos were moved to files,
+       and is cleared once the photo has been moved to a file. */
     private String base64String;
 
+    /* The path of the first photo's file, relative to the app's files directory.
+       Only the path is stored in the Room database so loading places doesn't
+       load every photo, and photos aren't transferred between Activities,
+       which can cause a TransactionTooLarge exception and crash the app. */
+    @ColumnInfo(name = "photo_path")
+    private String photoPath;
+
+    // SHA-256 hash of the photo file's bytes
+    @ColumnInfo(name = "photo_hash")
+    private String photoHash;
+
+    // The path of the photo's thumbnail file shown in the places list,
+    // or null if the thumbnail hasn't been made yet
+    @ColumnInfo(name = "thumbnail_path")
+    private String thumbnailPath;
+
     // the attributions text of the photo
     private String attributions;
 
     /* The sorting position of the place when drag and drop is enabled for place list.
     The position is used to get all places from the Room Database in the
-    order the user drags and drops them. */
-    private int position;
+    order the user drags and drops them.
+    Positions are spaced apart, so a place dropped between two others
+    takes a position in the gap and no other place is renumbered. */
+    private long position;
+
+    /* Whether the place is still being added manually.
+    A draft is saved as the user edits it but isn't shown in the places list
+    until the user adds it. */
+    @ColumnInfo(name = "is_draft")
+    private boolean draft;
+
+    /* The date and time the place was added to the places list,
+    in milliseconds since the epoch. Places saved before this was tracked
+    are numbered in the order they were added instead, so they sort before newer places.
+    Until a draft is published, this is the time it was last saved. */
+    @ColumnInfo(name = "added_at")
+    private long addedAt;
+
+    /* Whether the place was added manually, so its Place ID was generated by the app
+    and isn't known to the Places API. Manual places are never refreshed. */
+    @ColumnInfo(name = "is_manual")
+    private boolean manual;
+
+    /* The date and time the place's info was last fetched from the Places API,
+    in milliseconds since the epoch, or 0 if it hasn't been since it was saved.
+    A refresh only fetches the places that haven't been fetched recently. */
+    @ColumnInfo(name = "last_refreshed_at")
+    private long lastRefreshedAt;
+
+    /* Identifies the photo metadata the saved photo was fetched with,
+    or null if it isn't known. A refresh only fetches the photo again if
+    the place's first photo metadata is different. */
+    @ColumnInfo(name = "photo_reference")
+    private String photoReference;
 
     public PlaceModel(String placeId, String name, String address) {
         this.placeId = placeId;
@@ -78,6 +140,14 @@ public class PlaceModel implements Parcelable {
         return visits.size();
     }
 
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    public Long getLastVisitAt() {
+        return lastVisitAt;
+    }
+
     public String getNotes() {
         return notes;
     }
@@ -90,14 +160,46 @@ public class PlaceModel implements Parcelable {
         return base64String;
     }
 
+    public String getPhotoPath() {
+        return photoPath;
+    }
+
+    public String getPhotoHash() {
+        return photoHash;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
     public String getAttributions() {
         return attributions;
     }
 
-    public int getPosition() {
+    public long getPosition() {
         return position;
     }
 
+    public boolean isDraft() {
+        return draft;
+    }
+
+    public long getAddedAt() {
+        return addedAt;
+    }
+
+    public boolean isManual() {
+        return manual;
+    }
+
+    public long getLastRefreshedAt() {
+        return lastRefreshedAt;
+    }
+
+    public String getPhotoReference() {
+        return photoReference;
+    }
+
     public void setPlaceId(String placeId) {
         this.placeId = placeId;
     }
@@ -110,6 +212,14 @@ public class PlaceModel implements Parcelable {
         this.address = address;
     }
 
+    public void setVisitCount(int visitCount) {
+        this.visitCount = visitCount;
+    }
+
+    public void setLastVisitAt(Long lastVisitAt) {
+        this.lastVisitAt = lastVisitAt;
+    }
+
     public void setNotes(String notes) {
         this.notes = notes;
     }
@@ -122,56 +232,43 @@ public class PlaceModel implements Parcelable {
         this.base64String = base64String;
     }
 
+    public void setPhotoPath(String photoPath) {
+        this.photoPath = photoPath;
+    }
+
+    public void setPhotoHash(String photoHash) {
+        this.photoHash = photoHash;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+
     public void setAttributions(String attributions) {
         this.attributions = attributions;
     }
 
-    public void setPosition(int position) {
+    public void setPosition(long position) {
         this.position = position;
     }
 
-    /* everything below here is for implementing Parcelable */
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    // write the object's data to the passed-in Parcel
-    @Override
-    public void writeToParcel(Parcel out, int flags) {
-        out.writeString(placeId);
-        out.writeString(name);
-        out.writeString(address);
-        out.writeList(visits);
-        out.writeString(notes);
-        out.writeString(base64String);
-        out.writeString(attributions);
-        out.writeInt(position);
-    }
-
-    // This is used to regenerate the object. All Parcelables must have a CREATOR that implements these two methods
-    public static final Parcelable.Creator<PlaceModel> CREATOR = new Parcelable.Creator<PlaceModel>() {
-        public PlaceModel createFromParcel(Parcel in) {
-            return new PlaceModel(in);
-        }
-
-        public PlaceModel[] newArray(int size) {
-            return new PlaceModel[size];
-        }
-    };
-
-    /* In the case you have more than one field to retrieve from a given Parcel,
-    you must do this in the same order you put them in (that is, in a FIFO approach). */
-
-    // constructor that takes a Parcel and gives you an object populated with its values
-    private PlaceModel(Parcel in) {
-        placeId = in.readString();
-        name = in.readString();
-        address = in.readString();
-        in.readList(visits, Visit.class.getClassLoader());
-        notes = in.readString();
-        base64String = in.readString();
-        attributions = in.readString();
-        position = in.readInt();
+    public void setDraft(boolean draft) {
+        this.draft = draft;
+    }
+
+    public void setAddedAt(long addedAt) {
+        this.addedAt = addedAt;
+    }
+
+    public void setManual(boolean manual) {
+        this.manual = manual;
+    }
+
+    public void setLastRefreshedAt(long lastRefreshedAt) {
+        this.lastRefreshedAt = lastRefreshedAt;
+    }
+
+    public void setPhotoReference(String photoReference) {
+        this.photoReference = photoReference;
     }
 }
@@ -0,0 +1,36 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+/** The Place ID and name of a saved place, used to suggest saved places while the user types.
+ */
+public class PlaceName {
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+    private String name;
+
+    public PlaceName(@NonNull String placeId, String name) {
+        this.placeId = placeId;
+        this.name = name;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,47 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+/** The Place ID, name, and address of a place, either as saved
+ * or as fetched again from the Places API by a refresh.
+ */
+public class PlaceNameAndAddress {
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+    private String name;
+    private String address;
+
+    public PlaceNameAndAddress(@NonNull String placeId, String name, String address) {
+        this.placeId = placeId;
+        this.name = name;
+        this.address = address;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+}
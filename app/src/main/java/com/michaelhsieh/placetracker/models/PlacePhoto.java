@@ -0,0 +1,49 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+/** The Place ID and photo file of a place, used to make thumbnails of photos
+ * saved before thumbnails were made.
+ */
+public class PlacePhoto {
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+    @ColumnInfo(name = "photo_path")
+    private String photoPath;
+    @ColumnInfo(name = "photo_hash")
+    private String photoHash;
+
+    public PlacePhoto(@NonNull String placeId, String photoPath, String photoHash) {
+        this.placeId = placeId;
+        this.photoPath = photoPath;
+        this.photoHash = photoHash;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public String getPhotoPath() {
+        return photoPath;
+    }
+
+    public String getPhotoHash() {
+        return photoHash;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setPhotoPath(String photoPath) {
+        this.photoPath = photoPath;
+    }
+
+    public void setPhotoHash(String photoHash) {
+        this.photoHash = photoHash;
+    }
+}
@@ -0,0 +1,108 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+/** The few columns of a place that the places list displays.
+ * <p></p>
+ * Loading PlaceSummaries instead of PlaceModels means the list doesn't load
+ * every place's notes, photo, and visits. The full PlaceModel is only loaded by DetailActivity.
+ */
+public class PlaceSummary {
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+    private String name;
+    private String address;
+    // sorting position of the place when drag and drop is enabled for place list
+    private long position;
+
+    // number of visits to the place
+    @ColumnInfo(name = "visit_count")
+    private int visitCount;
+
+    // date and time of the most recent visit in milliseconds since the epoch,
+    // or null if the place hasn't been visited
+    @ColumnInfo(name = "last_visit_at")
+    private Long lastVisitAt;
+
+    // hash of the place's photo, or null if it has no photo file
+    @ColumnInfo(name = "photo_hash")
+    private String photoHash;
+
+    // path of the place's thumbnail file, or null if it has no thumbnail
+    @ColumnInfo(name = "thumbnail_path")
+    private String thumbnailPath;
+
+    public PlaceSummary(@NonNull String placeId, String name, String address) {
+        this.placeId = placeId;
+        this.name = name;
+        this.address = address;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getVisitCount() {
+        return visitCount;
+    }
+
+    public Long getLastVisitAt() {
+        return lastVisitAt;
+    }
+
+    public String getPhotoHash() {
+        return photoHash;
+    }
+
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public void setVisitCount(int visitCount) {
+        this.visitCount = visitCount;
+    }
+
+    public void setLastVisitAt(Long lastVisitAt) {
+        this.lastVisitAt = lastVisitAt;
+    }
+
+    public void setPhotoHash(String photoHash) {
+        this.photoHash = photoHash;
+    }
+
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+}
@@ -0,0 +1,47 @@
+package com.michaelhsieh.placetracker.models;
+
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+/** A place together with the rows of all its visits.
+ * Room fills in the visits from visit_table when the place is queried.
+ */
+public class PlaceWithVisits {
+
+    @Embedded
+    public PlaceModel place;
+
+    @Relation(parentColumn = "place_id", entityColumn = "place_id")
+    public List<VisitEntity> visits;
+
+    /** Get the place with its visits list set to the visits in this place's visit_table rows,
+     * in the order the user arranged them.
+     *
+     * @return The PlaceModel with its visits
+     */
+    public PlaceModel toPlaceModel() {
+        List<Visit> placeVisits = new ArrayList<>();
+        if (visits != null) {
+            List<VisitEntity> sortedVisits = new ArrayList<>(visits);
+            // Room doesn't order the rows of a Relation, so sort by visit list position
+            Collections.sort(sortedVisits, new Comparator<VisitEntity>() {
+                @Override
+                public int compare(VisitEntity first, VisitEntity second) {
+                    return first.getPosition() - second.getPosition();
+                }
+            });
+            for (VisitEntity visit : sortedVisits) {
+                placeVisits.add(visit.toVisit());
+            }
+        }
+        place.setVisits(placeVisits);
+        return place;
+    }
+}
@@ -0,0 +1,39 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+/** A place waiting to be refreshed and the reference of the photo it has,
+ * so its photo is only fetched again if the place's first photo changed.
+ */
+public class QueuedPlace {
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+    // null if the place has no photo, its photo's metadata wasn't saved, or it was deleted
+    @ColumnInfo(name = "photo_reference")
+    private String photoReference;
+
+    public QueuedPlace(@NonNull String placeId, String photoReference) {
+        this.placeId = placeId;
+        this.photoReference = photoReference;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public String getPhotoReference() {
+        return photoReference;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setPhotoReference(String photoReference) {
+        this.photoReference = photoReference;
+    }
+}
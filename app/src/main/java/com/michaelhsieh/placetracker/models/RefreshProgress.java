@@ -0,0 +1,36 @@
+package com.michaelhsieh.placetracker.models;
+
+/** How many places the current refresh has queued and how many of them are done.
+ * Both are 0 when no refresh is running.
+ */
+public class RefreshProgress {
+    private int total;
+    private int done;
+
+    public RefreshProgress(int total, int done) {
+        this.total = total;
+        this.done = done;
+    }
+
+    // true while places are queued to be refreshed
+    public boolean isRefreshing() {
+        return total > 0;
+    }
+
+    // Room requires all fields to have getters and setters
+    public int getTotal() {
+        return total;
+    }
+
+    public int getDone() {
+        return done;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public void setDone(int done) {
+        this.done = done;
+    }
+}
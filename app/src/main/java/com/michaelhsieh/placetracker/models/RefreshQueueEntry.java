@@ -0,0 +1,49 @@
+package com.michaelhsieh.placetracker.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/** A place waiting to be refreshed, stored as one row of the refresh_queue.
+ * <p></p>
+ * Every place is queued when a refresh starts, and marked done in the same transaction
+ * that saves its refreshed info. If the app's process is stopped during a refresh,
+ * the refresh resumes with the places that aren't done. The queue is emptied
+ * when the refresh finishes.
+ */
+@Entity(tableName = "refresh_queue")
+public class RefreshQueueEntry {
+    // Place ID of the place to refresh
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+
+    // whether the place has been refreshed, or couldn't be
+    @ColumnInfo(name = "is_done")
+    private boolean done;
+
+    public RefreshQueueEntry(@NonNull String placeId, boolean done) {
+        this.placeId = placeId;
+        this.done = done;
+    }
+
+    // Room requires all fields to have getters and setters
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+}
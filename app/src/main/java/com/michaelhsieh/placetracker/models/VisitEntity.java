@@ -0,0 +1,129 @@
+package com.michaelhsieh.placetracker.models;
+
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/** A single visit to a place, stored as one row of the visit_table.
+ * <p></p>
+ * Visits used to be saved as one JSON String inside place_table, so adding one visit
+ * rewrote the whole history. Each visit now has its own row keyed by the place's Place ID,
+ * and the row is deleted automatically when its place is deleted.
+ */
+@Entity(tableName = "visit_table",
+        foreignKeys = @ForeignKey(entity = PlaceModel.class,
+                parentColumns = "place_id",
+                childColumns = "place_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"place_id", "visited_at"})})
+public class VisitEntity {
+    // generated row ID of the visit
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "visit_id")
+    private long visitId;
+
+    // Place ID of the place that was visited
+    @NonNull
+    @ColumnInfo(name = "place_id")
+    private String placeId;
+
+    // date and time of the visit in milliseconds since the epoch
+    @ColumnInfo(name = "visited_at")
+    private long visitedAt;
+
+    // ID of the time zone the visit was recorded in, ex. America/Los_Angeles
+    @ColumnInfo(name = "time_zone")
+    private String timeZone;
+
+    // the order of the visit in the place's visit list, which the user can drag and drop
+    private int position;
+
+    public VisitEntity(@NonNull String placeId, long visitedAt, String timeZone, int position) {
+        this.placeId = placeId;
+        this.visitedAt = visitedAt;
+        this.timeZone = timeZone;
+        this.position = position;
+    }
+
+    /** Create the row for a Visit shown in the visit list.
+     *
+     * @param placeId The Place ID of the visited place
+     * @param visit The Visit to store. Its ID is 0 if it hasn't been stored yet.
+     * @param position The visit list position of the Visit
+     * @return A VisitEntity with the Visit's ID, date, time, and time zone
+     */
+    public static VisitEntity fromVisit(@NonNull String placeId, Visit visit, int position) {
+        VisitEntity visitEntity = new VisitEntity(placeId, visit.getVisitedAt(),
+                visit.getTimeZone(), position);
+        visitEntity.setVisitId(visit.getId());
+        return visitEntity;
+    }
+
+    /** Create the Visit displayed to the user from this row.
+     *
+     * @return A Visit with this row's ID, date and time, and time zone
+     */
+    public Visit toVisit() {
+        Visit visit = new Visit(visitedAt, timeZone);
+        visit.setId(visitId);
+        return visit;
+    }
+
+    /** Check whether another row stores the same date, time, time zone, and list position.
+     * Used to skip writing visits that didn't change.
+     *
+     * @param other The row to compare with
+     * @return True if nothing would change by writing the other row over this one
+     */
+    public boolean hasSameValues(VisitEntity other) {
+        boolean isSameTimeZone = timeZone == null ? other.timeZone == null : timeZone.equals(other.timeZone);
+        return visitedAt == other.visitedAt && position == other.position && isSameTimeZone;
+    }
+
+    // Room requires all fields to have getters and setters
+    public long getVisitId() {
+        return visitId;
+    }
+
+    @NonNull
+    public String getPlaceId() {
+        return placeId;
+    }
+
+    public long getVisitedAt() {
+        return visitedAt;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setVisitId(long visitId) {
+        this.visitId = visitId;
+    }
+
+    public void setPlaceId(@NonNull String placeId) {
+        this.placeId = placeId;
+    }
+
+    public void setVisitedAt(long visitedAt) {
+        this.visitedAt = visitedAt;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+}
@@ -3,66 +3,82 @@ package com.michaelhsieh.placetracker.models.expandablegroup;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.text.DateFormat;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.TimeZone;
 
-/** Each Visit contains a Calendar, date, and time.
+/** Each Visit is the instant the user visited a place and the time zone the visit was in.
+ * The date and time shown to the user are formatted when the Visit is displayed,
+ * so they always match the current locale.
  * ExpandableRecyclerView library requires implementing Parcelable or error occurs.
  */
 public class Visit implements Parcelable {
 
-    // used to get date and time Strings which are displayed to user,
-    // and also to update DatePicker and TimePicker to clicked Visit's date and time
-    private Calendar calendar;
-    private String date;
-    private String time;
+    // date and time of the visit in milliseconds since the epoch
+    private long visitedAt;
 
+    // ID of the time zone the visit was in, or null to use the device's time zone
+    private String timeZone;
+
+    // row ID of this visit in visit_table, or 0 if the visit hasn't been saved yet
+    private long id;
+
+    public Visit(long visitedAt, String timeZone) {
+        this.visitedAt = visitedAt;
+        this.timeZone = timeZone;
+    }
+
+    /** Create a Visit at a Calendar's date and time, in the Calendar's time zone.
+     *
+     * @param calendar The Calendar set to the visit's date and time
+     */
     public Visit(Calendar calendar) {
-        this.calendar = calendar;
-        // Date object representing this Calendar's time value
-        Date date = calendar.getTime();
-        // format date to show only hours, minutes, and AM/PM
-        this.time = DateFormat.getTimeInstance(DateFormat.SHORT).format(date);
-        // format date to show day of week, month, day, year
-        this.date = DateFormat.getDateInstance(DateFormat.FULL).format(date);
+        this(calendar.getTimeInMillis(), calendar.getTimeZone().getID());
     }
 
-    /** Get the Calendar used to display this Visit's date and time to the user.
+    /** Get the row ID of this Visit in the database.
      *
-     * @return The Calendar used by this Visit
+     * @return The visit_table row ID, or 0 if this Visit hasn't been saved yet
      */
-    public Calendar getCalendar() {
-        return calendar;
+    public long getId() {
+        return id;
     }
 
+    public void setId(long id) {
+        this.id = id;
+    }
 
-    /** Get the date from Calendar's Date object, ex. Saturday. July 4, 2020.
-     * <p></p>
-     * Source:
+    /** Get the date and time of this Visit.
      *
-     * Dany Pop
-     * https://stackoverflow.com/questions/454315/how-to-format-date-and-time-in-android
+     * @return Milliseconds since the epoch
+     */
+    public long getVisitedAt() {
+        return visitedAt;
+    }
+
+    /** Get the ID of the time zone this Visit was in, ex. America/Los_Angeles.
      *
-     * @return A String containing the day of week, month, day, and year
+     * @return The time zone ID, or null if unknown
      */
-    public String getDate() {
-        return date;
+    public String getTimeZone() {
+        return timeZone;
     }
 
-    /** Get the time from Calendar's Date object, ex. 6:35 PM.
+    /** Get a new Calendar set to this Visit's date and time, ex. to update
+     * DatePicker and TimePicker to a clicked Visit's date and time.
      *
-     * @return A String containing hours, minutes, and AM/PM
+     * @return A Calendar in this Visit's time zone
      */
-    public String getTime() {
-        return time;
+    public Calendar getCalendar() {
+        TimeZone zone = timeZone == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZone);
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(visitedAt);
+        return calendar;
     }
 
     private Visit(Parcel in) {
-        // Calendar implements Serializable
-        calendar = (Calendar) in.readSerializable();
-        date = in.readString();
-        time = in.readString();
+        visitedAt = in.readLong();
+        timeZone = in.readString();
+        id = in.readLong();
     }
 
     @Override
@@ -72,9 +88,9 @@ public class Visit implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeSerializable(calendar);
-        dest.writeString(date);
-        dest.writeString(time);
+        dest.writeLong(visitedAt);
+        dest.writeString(timeZone);
+        dest.writeLong(id);
     }
 
     public static final Creator<Visit> CREATOR = new Creator<Visit>() {
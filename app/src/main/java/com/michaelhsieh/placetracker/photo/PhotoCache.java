@@ -0,0 +1,80 @@
+package com.michaelhsieh.placetracker.photo;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.collection.LruCache;
+
+/** Keeps recently decoded place photos in memory, so reopening a place shows its photo
+ * without decoding it again.
+ * <p></p>
+ * The cache uses a fraction of the memory the app is allowed to use, and drops
+ * the least recently used photos when it's full or when the system is low on memory.
+ */
+final class PhotoCache implements ComponentCallbacks2 {
+
+    // fraction of the app's memory class the cache can use
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final LruCache<String, Bitmap> bitmaps;
+
+    PhotoCache(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * BYTES_PER_MEGABYTE / MEMORY_CLASS_DIVISOR;
+        bitmaps = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /** Get the key of a photo decoded at a size.
+     * A new photo of the same place has a new hash, so it never gets an old photo's key.
+     *
+     * @param placeId The Place ID of the place
+     * @param photoHash The hash of the photo file, or null if the photo is a Base64 String
+     * @param width The width the photo was decoded for, in pixels
+     * @param height The height the photo was decoded for, in pixels
+     * @return The key
+     */
+    static String key(String placeId, String photoHash, int width, int height) {
+        return placeId + '/' + photoHash + '/' + width + 'x' + height;
+    }
+
+    Bitmap get(String key) {
+        return bitmaps.get(key);
+    }
+
+    void put(String key, Bitmap bitmap) {
+        bitmaps.put(key, bitmap);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // the app is likely to be stopped soon, so free everything
+            bitmaps.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // keep the most recently viewed photos
+            bitmaps.trimToSize(bitmaps.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        bitmaps.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
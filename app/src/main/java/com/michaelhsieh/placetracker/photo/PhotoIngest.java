@@ -0,0 +1,195 @@
+package com.michaelhsieh.placetracker.photo;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+
+import com.michaelhsieh.placetracker.R;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Prepares a photo fetched from the Places SDK to be saved.
+ * <p></p>
+ * The photo is scaled down to fit the largest size it's shown at, then compressed
+ * in a format and quality set in resources. By default that's lossy WebP, which is
+ * several times smaller than the full quality JPEG photos used to be saved as.
+ * A small square thumbnail for the places list is made from the same photo,
+ * so the list never has to decode a full photo.
+ * Encoding takes tens of milliseconds, so it runs on its own thread,
+ * not the main thread or the database thread.
+ */
+public class PhotoIngest {
+
+    private static final int NUMBER_OF_THREADS = 1;
+
+    // largest width or height the Places SDK can fetch a photo at
+    private static final int MAX_FETCH_SIZE = 1600;
+
+    // encodes photos in the order they're fetched
+    public static final ExecutorService ingestExecutor =
+            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final int thumbnailSize;
+    private final int thumbnailQuality;
+
+    /** Create a PhotoIngest with the photo size, format, and quality set in resources.
+     *
+     * @param context The Context to get resources from
+     */
+    public PhotoIngest(Context context) {
+        Resources resources = context.getResources();
+        // the ImageView in DetailActivity, which is the largest a photo is shown
+        maxWidth = Math.min(resources.getDimensionPixelSize(R.dimen.photo_width), MAX_FETCH_SIZE);
+        maxHeight = Math.min(resources.getDimensionPixelSize(R.dimen.photo_height), MAX_FETCH_SIZE);
+        format = resources.getBoolean(R.bool.photo_use_webp)
+                ? Bitmap.CompressFormat.WEBP : Bitmap.CompressFormat.JPEG;
+        quality = resources.getInteger(R.integer.photo_quality);
+        thumbnailSize = resources.getDimensionPixelSize(R.dimen.thumbnail_size);
+        thumbnailQuality = resources.getInteger(R.integer.thumbnail_quality);
+    }
+
+    // the most pixels wide to fetch a photo, so it isn't bigger than it's shown
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    // the width and height of thumbnails, in pixels
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /** Scale down and compress a photo. Must be called on a non-UI thread.
+     *
+     * @param bitmap The photo fetched from the Places SDK
+     * @return The compressed photo
+     */
+    public EncodedPhoto encode(Bitmap bitmap) {
+        Bitmap scaled = scaleToFit(bitmap, maxWidth, maxHeight);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        scaled.compress(format, quality, outputStream);
+        if (scaled != bitmap) {
+            scaled.recycle();
+        }
+        return new EncodedPhoto(outputStream.toByteArray(), getExtension(format));
+    }
+
+    /** Make a thumbnail of a photo. Must be called on a non-UI thread.
+     *
+     * @param bitmap The photo
+     * @return The compressed thumbnail
+     */
+    public EncodedPhoto encodeThumbnail(Bitmap bitmap) {
+        Bitmap thumbnail = cropToSquare(bitmap, thumbnailSize);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        thumbnail.compress(format, thumbnailQuality, outputStream);
+        if (thumbnail != bitmap) {
+            thumbnail.recycle();
+        }
+        return new EncodedPhoto(outputStream.toByteArray(), getExtension(format));
+    }
+
+    /** Make a thumbnail of a saved photo file, ex. a photo saved before thumbnails were made.
+     * Must be called on a non-UI thread.
+     *
+     * @param photoFile The photo file
+     * @return The compressed thumbnail, or null if the photo couldn't be decoded
+     */
+    public EncodedPhoto encodeThumbnail(File photoFile) {
+        // only decode enough pixels to fill the thumbnail
+        Bitmap bitmap = PhotoLoader.decodeFile(photoFile, thumbnailSize, thumbnailSize);
+        if (bitmap == null) {
+            return null;
+        }
+        EncodedPhoto thumbnail = encodeThumbnail(bitmap);
+        bitmap.recycle();
+        return thumbnail;
+    }
+
+    /** Scale a photo so its shorter side is a size, then crop the middle of its longer side
+     * so it's square.
+     *
+     * @param bitmap The photo
+     * @param size The width and height of the square, in pixels
+     * @return The square photo, or the same photo if it's already that size
+     */
+    static Bitmap cropToSquare(Bitmap bitmap, int size) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width == size && height == size) {
+            return bitmap;
+        }
+        float scale = (float) size / Math.min(width, height);
+        int scaledWidth = Math.max(size, Math.round(width * scale));
+        int scaledHeight = Math.max(size, Math.round(height * scale));
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+        Bitmap cropped = Bitmap.createBitmap(scaled, (scaledWidth - size) / 2,
+                (scaledHeight - size) / 2, size, size);
+        if (scaled != bitmap && scaled != cropped) {
+            scaled.recycle();
+        }
+        return cropped;
+    }
+
+    /** Scale a photo down, keeping its aspect ratio, so it fits inside a size.
+     *
+     * @param bitmap The photo
+     * @param maxWidth The most pixels wide the photo can be
+     * @param maxHeight The most pixels high the photo can be
+     * @return The scaled photo, or the same photo if it already fits
+     */
+    static Bitmap scaleToFit(Bitmap bitmap, int maxWidth, int maxHeight) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width <= maxWidth && height <= maxHeight) {
+            return bitmap;
+        }
+        float scale = Math.min((float) maxWidth / width, (float) maxHeight / height);
+        int scaledWidth = Math.max(1, Math.round(width * scale));
+        int scaledHeight = Math.max(1, Math.round(height * scale));
+        // filter so the scaled photo is smooth
+        return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+    }
+
+    static String getExtension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case WEBP:
+                return ".webp";
+            case PNG:
+                return ".png";
+            case JPEG:
+            default:
+                return ".jpg";
+        }
+    }
+
+    /** The bytes of a compressed photo and the file extension of its format.
+     */
+    public static class EncodedPhoto {
+        private final byte[] bytes;
+        private final String extension;
+
+        EncodedPhoto(byte[] bytes, String extension) {
+            this.bytes = bytes;
+            this.extension = extension;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.michaelhsieh.placetracker.photo;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Decodes place photos on a background thread, so opening a place doesn't freeze the screen.
+ * <p></p>
+ * Photos are decoded at about the size they're shown at instead of their full size,
+ * which is much faster and uses much less memory for a large photo in a small ImageView.
+ * Decoded photos are kept in a memory cache shared by the whole app,
+ * so a recently viewed photo is shown right away.
+ */
+public class PhotoLoader {
+
+    private static final String TAG = PhotoLoader.class.getSimpleName();
+
+    private static final int NUMBER_OF_THREADS = 1;
+
+    private static volatile PhotoLoader instance;
+
+    /** Receives a decoded photo on the main thread.
+     *
+     */
+    public interface Callback {
+        // bitmap is null if the photo couldn't be decoded
+        void onPhotoLoaded(Bitmap bitmap);
+    }
+
+    private final PhotoStore photoStore;
+    private final PhotoCache photoCache;
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private PhotoLoader(Context context) {
+        photoStore = new PhotoStore(context);
+        photoCache = new PhotoCache(context);
+        // shrink the cache when the system is low on memory
+        context.registerComponentCallbacks(photoCache);
+    }
+
+    public static PhotoLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PhotoLoader.class) {
+                if (instance == null) {
+                    instance = new PhotoLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Decode a place's photo in the background, scaled down to about the target size.
+     * If the photo was recently decoded at this size, the callback is called right away instead.
+     * Must be called on the main thread.
+     *
+     * @param placeId The Place ID of the place
+     * @param photoHash The hash of the photo file, or null if the photo is a Base64 String
+     * @param photoPath The path of the photo file, or null if the photo is a Base64 String
+     * @param base64String The photo of a place saved before photos were stored as files,
+     *                     only used if photoPath is null
+     * @param targetWidth The width the photo is shown at, in pixels
+     * @param targetHeight The height the photo is shown at, in pixels
+     * @param callback Receives the photo, unless the request is canceled first
+     * @return The request, to cancel it if the photo isn't needed anymore
+     */
+    public Request load(String placeId, String photoHash, final String photoPath, final String base64String,
+                        final int targetWidth, final int targetHeight, final Callback callback) {
+        final Request request = new Request();
+        final String key = PhotoCache.key(placeId, photoHash, targetWidth, targetHeight);
+        Bitmap cachedBitmap = photoCache.get(key);
+        if (cachedBitmap != null) {
+            callback.onPhotoLoaded(cachedBitmap);
+            return request;
+        }
+
+        request.future = decodeExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isCanceled) {
+                    return;
+                }
+                final Bitmap bitmap;
+                if (photoPath != null) {
+                    bitmap = decodeFile(photoStore.getFile(photoPath), targetWidth, targetHeight);
+                } else {
+                    bitmap = decodeBase64String(base64String, targetWidth, targetHeight);
+                }
+                if (bitmap != null) {
+                    photoCache.put(key, bitmap);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the photo may not be needed anymore, ex. the Activity was destroyed
+                        if (!request.isCanceled) {
+                            callback.onPhotoLoaded(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+        return request;
+    }
+
+    /** Get the largest power of 2 to divide the photo's width and height by
+     * that keeps it at least as big as the target size.
+     *
+     * @param width The width of the photo, in pixels
+     * @param height The height of the photo, in pixels
+     * @param targetWidth The width the photo is shown at, in pixels
+     * @param targetHeight The height the photo is shown at, in pixels
+     * @return The inSampleSize to decode the photo with, at least 1
+     */
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /** Decode a photo file scaled down to about a target size. Must be called on a non-UI thread.
+     *
+     * @param photoFile The photo file
+     * @param targetWidth The smallest width to decode the photo at, in pixels
+     * @param targetHeight The smallest height to decode the photo at, in pixels
+     * @return The photo, or null if it couldn't be decoded
+     */
+    static Bitmap decodeFile(File photoFile, int targetWidth, int targetHeight) {
+        String path = photoFile.getAbsolutePath();
+        // read only the photo's size first
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e(TAG, "Couldn't read photo " + photoFile);
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    private static Bitmap decodeBase64String(String base64String, int targetWidth, int targetHeight) {
+        if (base64String == null || base64String.isEmpty()) {
+            return null;
+        }
+        byte[] data;
+        try {
+            data = Base64.decode(base64String, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Couldn't decode Base64 photo: " + e.getMessage());
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /** A photo being decoded, which can be canceled.
+     *
+     */
+    public static class Request {
+        // only read after it's set on the main thread,
+        // and null if the photo was already in the cache
+        private Future<?> future;
+        private volatile boolean isCanceled;
+
+        /** Stop waiting for the photo. The callback won't be called.
+         * Must be called on the main thread.
+         */
+        public void cancel() {
+            isCanceled = true;
+            // don't decode the photo if decoding hasn't started
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
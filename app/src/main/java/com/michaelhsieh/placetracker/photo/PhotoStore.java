@@ -0,0 +1,154 @@
+package com.michaelhsieh.placetracker.photo;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Saves place photos as files in the app's private storage, so place_table only needs
+ * to store each photo's path and content hash instead of the whole image.
+ * <p></p>
+ * Files are named by the SHA-256 hash of their bytes, so the same photo is only stored once.
+ * Must be used on a non-UI thread.
+ */
+public class PhotoStore {
+
+    // folder inside the app's files directory that holds the photos
+    private static final String PHOTO_DIRECTORY = "place_photos";
+
+    // folder that holds the small copies of photos shown in the places list
+    private static final String THUMBNAIL_DIRECTORY = "place_thumbnails";
+
+    // extension of photos saved before photos were compressed by PhotoIngest
+    private static final String JPEG_EXTENSION = ".jpg";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File filesDir;
+
+    public PhotoStore(Context context) {
+        filesDir = context.getApplicationContext().getFilesDir();
+    }
+
+    /** Write JPEG photo bytes to a file, unless a file with the same bytes already exists.
+     *
+     * @param jpegBytes The compressed JPEG photo
+     * @return The path of the file, relative to the app's files directory, and the photo's hash
+     * @throws IOException If the file couldn't be written
+     */
+    public StoredPhoto save(byte[] jpegBytes) throws IOException {
+        return save(jpegBytes, JPEG_EXTENSION);
+    }
+
+    /** Write compressed photo bytes to a file, unless a file with the same bytes already exists.
+     *
+     * @param photoBytes The compressed photo
+     * @param extension The file extension of the photo's format, ex. ".webp"
+     * @return The path of the file, relative to the app's files directory, and the photo's hash
+     * @throws IOException If the file couldn't be written
+     */
+    public StoredPhoto save(byte[] photoBytes, String extension) throws IOException {
+        return save(PHOTO_DIRECTORY, photoBytes, extension);
+    }
+
+    /** Write a compressed thumbnail to a file in its own folder, apart from the full photos.
+     *
+     * @param thumbnailBytes The compressed thumbnail
+     * @param extension The file extension of the thumbnail's format, ex. ".webp"
+     * @return The path of the file, relative to the app's files directory, and the thumbnail's hash
+     * @throws IOException If the file couldn't be written
+     */
+    public StoredPhoto saveThumbnail(byte[] thumbnailBytes, String extension) throws IOException {
+        return save(THUMBNAIL_DIRECTORY, thumbnailBytes, extension);
+    }
+
+    private StoredPhoto save(String directoryName, byte[] photoBytes, String extension) throws IOException {
+        File directory = new File(filesDir, directoryName);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create photo directory " + directory);
+        }
+
+        String hash = hash(photoBytes);
+        String path = directoryName + File.separator + hash + extension;
+        File photoFile = new File(filesDir, path);
+
+        if (!photoFile.exists()) {
+            // write to a temporary file first so a half-written photo is never read
+            File tempFile = new File(directory, hash + ".tmp");
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                outputStream.write(photoBytes);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempFile.renameTo(photoFile)) {
+                tempFile.delete();
+                throw new IOException("Couldn't save photo " + photoFile);
+            }
+        }
+        return new StoredPhoto(path, hash);
+    }
+
+    /** Get the file of a stored photo.
+     *
+     * @param path The path saved in place_table
+     * @return The photo's File
+     */
+    public File getFile(String path) {
+        return new File(filesDir, path);
+    }
+
+    /** Delete a stored photo. Only call this when no place uses the photo anymore.
+     *
+     * @param path The path saved in place_table
+     * @return True if the file was deleted
+     */
+    public boolean delete(String path) {
+        return getFile(path).delete();
+    }
+
+    /** Get the SHA-256 hash of photo bytes as a hexadecimal String.
+     *
+     * @param bytes The photo bytes
+     * @return A 64-character lowercase hexadecimal String
+     */
+    public static String hash(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Android device must support SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] hashBytes = digest.digest(bytes);
+        char[] hexChars = new char[hashBytes.length * 2];
+        for (int i = 0; i < hashBytes.length; i++) {
+            hexChars[i * 2] = HEX_DIGITS[(hashBytes[i] >> 4) & 0xf];
+            hexChars[i * 2 + 1] = HEX_DIGITS[hashBytes[i] & 0xf];
+        }
+        return new String(hexChars);
+    }
+
+    /** The path and content hash of a photo saved by PhotoStore.
+     */
+    public static class StoredPhoto {
+        private final String path;
+        private final String hash;
+
+        StoredPhoto(String path, String hash) {
+            this.path = path;
+            this.hash = hash;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.michaelhsieh.placetracker.places;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+import com.google.android.libraries.places.api.model.Place;
+import com.google.android.libraries.places.api.net.PlacesStatusCodes;
+import com.michaelhsieh.placetracker.refresh.RefreshEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.Nullable;
+
+/** Answers Places API requests locally, to run the app and load-test refreshes
+ * without a network or API key.
+ * <p></p>
+ * Every Place ID is a place, whose name, address, and photo depend only on its Place ID.
+ * Each answer arrives after a random latency, and a request fails with a temporary
+ * network error at the error rate. The latencies and errors come from a seeded Random,
+ * so the same requests in the same order always get the same answers at the same times.
+ * <p></p>
+ * Like the Places SDK, all methods and callbacks must run on the scheduler's thread.
+ */
+public class FakePlacesGateway implements PlacesGateway {
+
+    // size of the canned photos and their metadata
+    public static final int PHOTO_WIDTH = 640;
+    public static final int PHOTO_HEIGHT = 480;
+
+    // number of places predicted for any text
+    private static final int NUM_PREDICTIONS = 5;
+
+    private final RefreshEngine.Scheduler scheduler;
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double errorRate;
+    private final List<Bitmap> cannedPhotos;
+    // the metadata of each canned photo, at the same index
+    private final List<PhotoMetadata> photoMetadatas;
+    private final Random random;
+
+    /** Create a fake gateway.
+     *
+     * @param scheduler Delivers answers after their latency, on the thread that made the request
+     * @param minLatencyMillis The shortest time to answer a request
+     * @param maxLatencyMillis The longest time to answer a request
+     * @param errorRate The fraction of requests that fail, from 0 to 1
+     * @param cannedPhotos The photos places have. Places have no photos if it's empty
+     * @param seed The seed of the latencies and errors
+     */
+    public FakePlacesGateway(RefreshEngine.Scheduler scheduler, long minLatencyMillis, long maxLatencyMillis,
+                             double errorRate, List<Bitmap> cannedPhotos, long seed) {
+        if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+            throw new IllegalArgumentException("Invalid latency: " + minLatencyMillis + " to " + maxLatencyMillis);
+        }
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Invalid error rate: " + errorRate);
+        }
+        this.scheduler = scheduler;
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.errorRate = errorRate;
+        this.cannedPhotos = new ArrayList<>(cannedPhotos);
+        random = new Random(seed);
+
+        photoMetadatas = new ArrayList<>(cannedPhotos.size());
+        for (int i = 0; i < cannedPhotos.size(); i++) {
+            photoMetadatas.add(PhotoMetadata.builder("fake_photo_" + i)
+                    .setAttributions("Fake photo " + i)
+                    .setWidth(PHOTO_WIDTH)
+                    .setHeight(PHOTO_HEIGHT)
+                    .build());
+        }
+    }
+
+    /** Create photos of solid colors for a fake gateway to return.
+     *
+     * @param count The number of photos
+     * @return The photos, each a different color
+     */
+    public static List<Bitmap> createCannedPhotos(int count) {
+        List<Bitmap> photos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Bitmap photo = Bitmap.createBitmap(PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.Config.ARGB_8888);
+            photo.eraseColor(Color.HSVToColor(new float[] {360f * i / count, 0.5f, 0.9f}));
+            photos.add(photo);
+        }
+        return photos;
+    }
+
+    // The fields are ignored, since the place's ID, name, address, and photo are always returned.
+    @Override
+    public void fetchPlace(final String placeId, List<Place.Field> fields,
+                           @Nullable AutocompleteSessionToken sessionToken, Callback<Place> callback) {
+        List<PhotoMetadata> metadata = photoMetadatas.isEmpty()
+                ? Collections.<PhotoMetadata>emptyList()
+                : Collections.singletonList(photoMetadatas.get(indexOf(placeId, photoMetadatas.size())));
+        final Place place = Place.builder()
+                .setId(placeId)
+                .setName("Fake place " + placeId)
+                .setAddress((indexOf(placeId, 9999) + 1) + " Main St")
+                .setPhotoMetadatas(metadata)
+                .build();
+        answer(callback, place, null);
+    }
+
+    @Override
+    public void fetchPhoto(PhotoMetadata photoMetadata, int maxWidth, int maxHeight, Callback<Bitmap> callback) {
+        // the canned photos are returned at their own size
+        int index = photoMetadatas.indexOf(photoMetadata);
+        if (index < 0) {
+            answer(callback, null, new ApiException(new Status(PlacesStatusCodes.NOT_FOUND)));
+        } else {
+            answer(callback, cannedPhotos.get(index), null);
+        }
+    }
+
+    @Override
+    public void findAutocompletePredictions(String query, AutocompleteSessionToken sessionToken,
+                                            Callback<List<AutocompletePrediction>> callback) {
+        List<AutocompletePrediction> predictions = new ArrayList<>(NUM_PREDICTIONS);
+        for (int i = 0; i < NUM_PREDICTIONS; i++) {
+            String placeId = "fake_" + query.trim().toLowerCase().replace(' ', '_') + "_" + i;
+            String address = (indexOf(placeId, 9999) + 1) + " Main St";
+            predictions.add(AutocompletePrediction.builder(placeId)
+                    .setPrimaryText("Fake place " + placeId)
+                    .setSecondaryText(address)
+                    .setFullText("Fake place " + placeId + ", " + address)
+                    .build());
+        }
+        answer(callback, predictions, null);
+    }
+
+    // answer after a random latency, failing at the error rate unless the answer is an error already
+    private <T> void answer(final Callback<T> callback, final T result, Exception error) {
+        long latencyMillis = minLatencyMillis
+                + (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+        if (error == null && random.nextDouble() < errorRate) {
+            error = new ApiException(new Status(CommonStatusCodes.NETWORK_ERROR));
+        }
+        final Exception exception = error;
+        scheduler.schedule(() -> {
+            if (exception != null) {
+                callback.onFailure(exception);
+            } else {
+                callback.onSuccess(result);
+            }
+        }, latencyMillis);
+    }
+
+    // the same index from 0 to size - 1 for the same Place ID
+    private static int indexOf(String placeId, int size) {
+        return (placeId.hashCode() & Integer.MAX_VALUE) % size;
+    }
+}
@@ -0,0 +1,60 @@
+package com.michaelhsieh.placetracker.places;
+
+import android.graphics.Bitmap;
+
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+import com.google.android.libraries.places.api.model.Place;
+
+import java.util.List;
+
+import androidx.annotation.Nullable;
+
+/** Sends the app's requests to the Places API.
+ * <p></p>
+ * The app calls the Places API only through a gateway, so the places list, search,
+ * and refresh can run against FakePlacesGateway without a network or API key.
+ * Callbacks are called on the main thread, like Places SDK listeners.
+ */
+public interface PlacesGateway {
+
+    /** Receives the answer to one request.
+     *
+     * @param <T> The result of the request
+     */
+    interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception exception);
+    }
+
+    /** Get a place's details.
+     *
+     * @param placeId The Place ID of the place
+     * @param fields The fields of the place to get
+     * @param sessionToken The token of the autocomplete session the place was suggested in,
+     *                     or null if it wasn't suggested
+     * @param callback Receives the place
+     */
+    void fetchPlace(String placeId, List<Place.Field> fields, @Nullable AutocompleteSessionToken sessionToken,
+                    Callback<Place> callback);
+
+    /** Get a place's photo, scaled down to fit a size.
+     *
+     * @param photoMetadata The metadata of the photo, from the place's details
+     * @param maxWidth The largest width of the photo in pixels
+     * @param maxHeight The largest height of the photo in pixels
+     * @param callback Receives the photo
+     */
+    void fetchPhoto(PhotoMetadata photoMetadata, int maxWidth, int maxHeight, Callback<Bitmap> callback);
+
+    /** Get the places predicted for text the user typed.
+     *
+     * @param query The text the user typed
+     * @param sessionToken Groups the predictions of one search, so they're billed as one session
+     * @param callback Receives the predicted places
+     */
+    void findAutocompletePredictions(String query, AutocompleteSessionToken sessionToken,
+                                     Callback<List<AutocompletePrediction>> callback);
+}
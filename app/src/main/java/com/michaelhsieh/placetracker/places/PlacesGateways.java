@@ -0,0 +1,62 @@
+package com.michaelhsieh.placetracker.places;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.libraries.places.api.Places;
+import com.michaelhsieh.placetracker.BuildConfig;
+import com.michaelhsieh.placetracker.R;
+
+import java.util.List;
+
+/** Creates the PlacesGateway the app uses, which is FakePlacesGateway
+ * if USE_FAKE_PLACES is set in a debug build.
+ */
+public final class PlacesGateways {
+
+    // the fake gateway answers the same way every time the app runs
+    private static final long FAKE_SEED = 1;
+
+    // the fake gateway's photos, created once since every refresh creates a gateway
+    private static List<Bitmap> fakeCannedPhotos;
+
+    private PlacesGateways() {
+    }
+
+    /** Create a gateway, initializing the Places SDK if needed.
+     * The SDK is initialized even for the fake gateway, so switching gateways
+     * doesn't change what the rest of the app can use.
+     *
+     * @param context The Context to get the API key and settings from
+     * @return The gateway, which answers on the main thread
+     */
+    public static PlacesGateway create(Context context) {
+        // the app may have been started by WorkManager, before MainActivity initialized the SDK
+        if (!Places.isInitialized()) {
+            Places.initialize(context.getApplicationContext(), context.getString(R.string.google_places_api_key));
+        }
+
+        Resources resources = context.getResources();
+        if (!BuildConfig.DEBUG || !BuildConfig.USE_FAKE_PLACES) {
+            return new SdkPlacesGateway(Places.createClient(context));
+        }
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        return new FakePlacesGateway(
+                (task, delayMillis) -> mainHandler.postDelayed(task, delayMillis),
+                resources.getInteger(R.integer.fake_places_min_latency_millis),
+                resources.getInteger(R.integer.fake_places_max_latency_millis),
+                resources.getInteger(R.integer.fake_places_error_percent) / 100.0,
+                getFakeCannedPhotos(resources.getInteger(R.integer.fake_places_photo_count)),
+                FAKE_SEED);
+    }
+
+    private static synchronized List<Bitmap> getFakeCannedPhotos(int count) {
+        if (fakeCannedPhotos == null) {
+            fakeCannedPhotos = FakePlacesGateway.createCannedPhotos(count);
+        }
+        return fakeCannedPhotos;
+    }
+}
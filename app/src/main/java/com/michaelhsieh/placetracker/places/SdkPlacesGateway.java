@@ -0,0 +1,64 @@
+package com.michaelhsieh.placetracker.places;
+
+import android.graphics.Bitmap;
+
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+import com.google.android.libraries.places.api.model.Place;
+import com.google.android.libraries.places.api.net.FetchPhotoRequest;
+import com.google.android.libraries.places.api.net.FetchPlaceRequest;
+import com.google.android.libraries.places.api.net.FindAutocompletePredictionsRequest;
+import com.google.android.libraries.places.api.net.PlacesClient;
+
+import java.util.List;
+
+import androidx.annotation.Nullable;
+
+/** Sends requests to the Places API with the Google Places SDK.
+ */
+public class SdkPlacesGateway implements PlacesGateway {
+
+    private final PlacesClient placesClient;
+
+    public SdkPlacesGateway(PlacesClient placesClient) {
+        this.placesClient = placesClient;
+    }
+
+    @Override
+    public void fetchPlace(String placeId, List<Place.Field> fields,
+                           @Nullable AutocompleteSessionToken sessionToken, final Callback<Place> callback) {
+        FetchPlaceRequest request = FetchPlaceRequest.builder(placeId, fields)
+                .setSessionToken(sessionToken)
+                .build();
+        placesClient.fetchPlace(request)
+                .addOnSuccessListener((response) -> callback.onSuccess(response.getPlace()))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void fetchPhoto(PhotoMetadata photoMetadata, int maxWidth, int maxHeight,
+                           final Callback<Bitmap> callback) {
+        // Must set max width and height in pixels. The image's default width and height
+        // causes a TransactionTooLargeException and the app crashes.
+        FetchPhotoRequest request = FetchPhotoRequest.builder(photoMetadata)
+                .setMaxWidth(maxWidth)
+                .setMaxHeight(maxHeight)
+                .build();
+        placesClient.fetchPhoto(request)
+                .addOnSuccessListener((response) -> callback.onSuccess(response.getBitmap()))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void findAutocompletePredictions(String query, AutocompleteSessionToken sessionToken,
+                                            final Callback<List<AutocompletePrediction>> callback) {
+        FindAutocompletePredictionsRequest request = FindAutocompletePredictionsRequest.builder()
+                .setSessionToken(sessionToken)
+                .setQuery(query)
+                .build();
+        placesClient.findAutocompletePredictions(request)
+                .addOnSuccessListener((response) -> callback.onSuccess(response.getAutocompletePredictions()))
+                .addOnFailureListener(callback::onFailure);
+    }
+}
@@ -0,0 +1,33 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+
+/** Identifies a place photo by its metadata, so a refresh can tell whether
+ * a place's first photo changed without fetching the photo.
+ * <p></p>
+ * The Places SDK doesn't make a photo's reference public, and different photos can have
+ * the same attributions, width, and height. The metadata's hash code is added, since the SDK's
+ * metadata compares equal by all of its values, including the photo reference.
+ * If the hash code ever stops being the same for the same photo, ex. after the SDK is updated,
+ * references stop matching and the photos are fetched again, so a changed photo is never missed.
+ */
+public final class PhotoReference {
+
+    private PhotoReference() {
+    }
+
+    /** Get the reference of a photo.
+     *
+     * @param photoMetadata The metadata of the photo
+     * @return The reference, which is the same for the same photo
+     */
+    public static String of(PhotoMetadata photoMetadata) {
+        return of(photoMetadata.getAttributions(), photoMetadata.getWidth(), photoMetadata.getHeight(),
+                photoMetadata.hashCode());
+    }
+
+    static String of(String attributions, int width, int height, int metadataHash) {
+        return width + "x" + height + "#" + Integer.toHexString(metadataHash)
+                + "/" + (attributions == null ? "" : attributions);
+    }
+}
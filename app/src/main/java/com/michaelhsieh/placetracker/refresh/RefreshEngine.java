@@ -0,0 +1,294 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+/** Fetches refreshed info for a list of places, a few at a time.
+ * <p></p>
+ * At most maxInFlight places are fetched at once, so refreshing thousands of places
+ * doesn't send thousands of requests at the same time. A place stays in flight while it
+ * waits to be retried, so the engine slows down when the Places API is overloaded.
+ * A request that doesn't answer in time is retried like a failed request,
+ * so a refresh always finishes. Only the request is timed: once the fetcher calls
+ * onFetched(), a slow save doesn't make the place be fetched again.
+ * <p></p>
+ * Every place gets exactly one Outcome. Answers to requests that already timed out,
+ * or that answer twice, are ignored. The listener's onFinished() is called once,
+ * after every place has an Outcome.
+ * <p></p>
+ * An engine runs once. All methods, fetcher callbacks, and scheduled tasks
+ * must run on the same thread, ex. the main thread.
+ *
+ * @param <T> The refreshed info of a place
+ */
+public class RefreshEngine<T> {
+
+    /** Sends the request for one place.
+     *
+     * @param <T> The refreshed info of a place
+     */
+    public interface Fetcher<T> {
+        void fetch(String placeId, FetchCallback<T> callback);
+    }
+
+    /** Receives the answer to one request.
+     *
+     * @param <T> The refreshed info of a place
+     */
+    public interface FetchCallback<T> {
+        // The request was answered and only saving is left, so the attempt stops timing out.
+        // The place stays in flight until onSuccess(), or onFailure() if saving failed.
+        void onFetched();
+
+        void onSuccess(T result);
+
+        void onFailure(Exception exception);
+    }
+
+    /** Runs a task after a delay, on the engine's thread.
+     *
+     */
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    /** Receives the Outcome of each place, and all of them once the refresh is finished.
+     *
+     * @param <T> The refreshed info of a place
+     */
+    public interface Listener<T> {
+        void onItemFinished(Outcome<T> outcome);
+
+        void onFinished(List<Outcome<T>> outcomes);
+    }
+
+    private final Fetcher<T> fetcher;
+    private final Scheduler scheduler;
+    private final RetryPolicy retryPolicy;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final Random random;
+
+    private Listener<T> listener;
+    private final Queue<Item> pendingItems = new ArrayDeque<>();
+    private final List<Outcome<T>> outcomes = new ArrayList<>();
+    private int inFlight = 0;
+
+    private boolean isStarted = false;
+    private boolean isCanceled = false;
+    private boolean isFinished = false;
+    // true while requests are being sent, ex. when a fetcher answers right away
+    private boolean isLaunching = false;
+
+    /** Create a RefreshEngine.
+     *
+     * @param fetcher Sends the request for a place
+     * @param scheduler Runs retries and timeouts later
+     * @param retryPolicy Decides which failed requests are retried and when
+     * @param maxInFlight The most places to fetch at once, at least 1
+     * @param timeoutMillis How long to wait for an answer before trying again
+     * @param random Picks how long to wait before each retry
+     */
+    public RefreshEngine(Fetcher<T> fetcher, Scheduler scheduler, RetryPolicy retryPolicy,
+                         int maxInFlight, long timeoutMillis, Random random) {
+        this.fetcher = fetcher;
+        this.scheduler = scheduler;
+        this.retryPolicy = retryPolicy;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.timeoutMillis = timeoutMillis;
+        this.random = random;
+    }
+
+    /** Start fetching places. A Place ID in the list more than once is only fetched once.
+     *
+     * @param placeIds The Place IDs of the places to refresh
+     * @param listener Receives the Outcomes
+     */
+    public void start(List<String> placeIds, Listener<T> listener) {
+        if (isStarted) {
+            throw new IllegalStateException("RefreshEngine already started");
+        }
+        isStarted = true;
+        this.listener = listener;
+        for (String placeId : new LinkedHashSet<>(placeIds)) {
+            pendingItems.add(new Item(placeId));
+        }
+        launchRequests();
+    }
+
+    /** Stop the refresh. No more requests are sent and the listener isn't called again.
+     *
+     */
+    public void cancel() {
+        isCanceled = true;
+        pendingItems.clear();
+    }
+
+    // true once started and until finished or canceled
+    public boolean isRunning() {
+        return isStarted && !isFinished && !isCanceled;
+    }
+
+    private void launchRequests() {
+        if (isLaunching) {
+            // the loop below sends the next request
+            return;
+        }
+        isLaunching = true;
+        while (!isCanceled && inFlight < maxInFlight && !pendingItems.isEmpty()) {
+            inFlight++;
+            sendRequest(pendingItems.poll());
+        }
+        isLaunching = false;
+
+        if (!isCanceled && !isFinished && inFlight == 0 && pendingItems.isEmpty()) {
+            isFinished = true;
+            listener.onFinished(Collections.unmodifiableList(outcomes));
+        }
+    }
+
+    private void sendRequest(final Item item) {
+        item.attempts++;
+        final int attempt = item.attempts;
+        item.waitingAttempt = attempt;
+
+        // schedule the timeout first, in case the fetcher answers right away
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (item.savingAttempt != attempt) {
+                    onFailure(item, attempt, new TimeoutException("No answer for " + item.placeId));
+                }
+            }
+        }, timeoutMillis);
+
+        fetcher.fetch(item.placeId, new FetchCallback<T>() {
+            @Override
+            public void onFetched() {
+                if (isWaitingFor(item, attempt)) {
+                    item.savingAttempt = attempt;
+                }
+            }
+
+            @Override
+            public void onSuccess(T result) {
+                if (!isWaitingFor(item, attempt)) {
+                    return;
+                }
+                item.waitingAttempt = 0;
+                finish(new Outcome<>(item.placeId, Outcome.Status.REFRESHED, result, null, attempt));
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                RefreshEngine.this.onFailure(item, attempt, exception);
+            }
+        });
+    }
+
+    private void onFailure(final Item item, int attempt, Exception exception) {
+        if (!isWaitingFor(item, attempt)) {
+            return;
+        }
+        item.waitingAttempt = 0;
+
+        boolean isRetryable = retryPolicy.isRetryable(exception);
+        if (isRetryable && attempt < retryPolicy.getMaxAttempts()) {
+            // keep the place in flight while waiting, so fewer requests are sent
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCanceled) {
+                        sendRequest(item);
+                    }
+                }
+            }, retryPolicy.getDelayMillis(attempt, random));
+        } else {
+            Outcome.Status status = isRetryable ? Outcome.Status.GAVE_UP : Outcome.Status.FAILED;
+            finish(new Outcome<T>(item.placeId, status, null, exception, attempt));
+        }
+    }
+
+    // false for late or repeated answers, which already have an Outcome or were retried
+    private boolean isWaitingFor(Item item, int attempt) {
+        return !isCanceled && item.waitingAttempt == attempt;
+    }
+
+    private void finish(Outcome<T> outcome) {
+        inFlight--;
+        outcomes.add(outcome);
+        listener.onItemFinished(outcome);
+        launchRequests();
+    }
+
+    private static class Item {
+        private final String placeId;
+        private int attempts = 0;
+        // the attempt whose answer is expected, or 0 if none is
+        private int waitingAttempt = 0;
+        // the attempt that was answered and is being saved, which doesn't time out
+        private int savingAttempt = 0;
+
+        private Item(String placeId) {
+            this.placeId = placeId;
+        }
+    }
+
+    /** How refreshing one place ended.
+     *
+     * @param <T> The refreshed info of a place
+     */
+    public static class Outcome<T> {
+
+        public enum Status {
+            REFRESHED,
+            // the request can't succeed, ex. the place doesn't exist
+            FAILED,
+            // the request kept failing with errors that may go away later
+            GAVE_UP
+        }
+
+        private final String placeId;
+        private final Status status;
+        private final T result;
+        private final Exception exception;
+        private final int attempts;
+
+        Outcome(String placeId, Status status, T result, Exception exception, int attempts) {
+            this.placeId = placeId;
+            this.status = status;
+            this.result = result;
+            this.exception = exception;
+            this.attempts = attempts;
+        }
+
+        public String getPlaceId() {
+            return placeId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        // the refreshed info, or null if the place wasn't refreshed
+        public T getResult() {
+            return result;
+        }
+
+        // the last error, or null if the place was refreshed
+        public Exception getException() {
+            return exception;
+        }
+
+        // how many times the request was sent
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
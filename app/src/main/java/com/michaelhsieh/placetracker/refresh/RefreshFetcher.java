@@ -0,0 +1,149 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+import com.google.android.libraries.places.api.model.Place;
+import com.michaelhsieh.placetracker.places.PlacesGateway;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Fetches a place's refreshed info, and its first photo if the photo changed, and saves them.
+ * <p></p>
+ * The place only counts as refreshed once it's saved, so a place being saved
+ * still counts as one of the engine's requests in flight. Only the Places API requests
+ * are timed, since saving waits for the photo and database threads, which may be busy
+ * ex. with ThumbnailBackfill.
+ */
+final class RefreshFetcher implements RefreshEngine.Fetcher<Place> {
+
+    private static final String TAG = RefreshFetcher.class.getSimpleName();
+
+    private static final List<Place.Field> REFRESHED_FIELDS =
+            Arrays.asList(Place.Field.ID, Place.Field.NAME, Place.Field.ADDRESS, Place.Field.PHOTO_METADATAS);
+
+    /** Saves a refreshed place.
+     *
+     */
+    interface Saver {
+        /** Save a refreshed place and its photo.
+         *
+         * @param placeId The Place ID the place was fetched with
+         * @param place The refreshed place
+         * @param photo The refreshed photo, or null to keep the place's photo
+         * @param attributions The attributions text of the photo
+         * @param photoReference Identifies the photo metadata the photo was fetched with
+         * @param callback Must be called once on the engine's thread, when the place is saved
+         *                 or saving failed
+         */
+        void save(String placeId, Place place, Bitmap photo, String attributions, String photoReference,
+                  SaveCallback callback);
+    }
+
+    /** Receives whether a refreshed place was saved.
+     *
+     */
+    interface SaveCallback {
+        void onSaved();
+
+        void onSaveFailed(Exception exception);
+    }
+
+    /** A refreshed place couldn't be saved, ex. the database was busy or the disk was full.
+     * It's retried like a temporary network error, and given up on if it keeps failing,
+     * so the place is refreshed again by a later refresh.
+     */
+    static final class SaveException extends Exception {
+        SaveException(Throwable cause) {
+            super("Refreshed place not saved: " + cause.getMessage(), cause);
+        }
+    }
+
+    private final PlacesGateway placesGateway;
+    // the reference of each place's saved photo, or null if unknown
+    private final Map<String, String> photoReferences;
+    private final RetryPolicy retryPolicy;
+    private final int maxPhotoWidth;
+    private final int maxPhotoHeight;
+    private final Saver saver;
+
+    RefreshFetcher(PlacesGateway placesGateway, Map<String, String> photoReferences, RetryPolicy retryPolicy,
+                   int maxPhotoWidth, int maxPhotoHeight, Saver saver) {
+        this.placesGateway = placesGateway;
+        this.photoReferences = photoReferences;
+        this.retryPolicy = retryPolicy;
+        this.maxPhotoWidth = maxPhotoWidth;
+        this.maxPhotoHeight = maxPhotoHeight;
+        this.saver = saver;
+    }
+
+    @Override
+    public void fetch(final String placeId, final RefreshEngine.FetchCallback<Place> callback) {
+        placesGateway.fetchPlace(placeId, REFRESHED_FIELDS, null, new PlacesGateway.Callback<Place>() {
+            @Override
+            public void onSuccess(Place place) {
+                fetchPhotoAndSave(placeId, place, callback);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                callback.onFailure(exception);
+            }
+        });
+    }
+
+    private void fetchPhotoAndSave(final String placeId, final Place place,
+                                   final RefreshEngine.FetchCallback<Place> callback) {
+        // if photo metadata not found, ex. place has no photos, the place's photo isn't changed
+        List<PhotoMetadata> metadata = place.getPhotoMetadatas();
+        if (metadata == null || metadata.isEmpty()) {
+            save(placeId, place, null, null, null, callback);
+            return;
+        }
+
+        final PhotoMetadata photoMetadata = metadata.get(0);
+        final String photoReference = PhotoReference.of(photoMetadata);
+        if (photoReference.equals(photoReferences.get(placeId))) {
+            // the place already has this photo
+            save(placeId, place, null, null, null, callback);
+            return;
+        }
+
+        placesGateway.fetchPhoto(photoMetadata, maxPhotoWidth, maxPhotoHeight, new PlacesGateway.Callback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap photo) {
+                save(placeId, place, photo, photoMetadata.getAttributions(), photoReference, callback);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                if (retryPolicy.isRetryable(exception)) {
+                    callback.onFailure(exception);
+                } else {
+                    // still save the refreshed name and address
+                    Log.e(TAG, "Photo not found: " + exception.getMessage());
+                    save(placeId, place, null, null, null, callback);
+                }
+            }
+        });
+    }
+
+    private void save(String placeId, final Place place, Bitmap photo, String attributions, String photoReference,
+                      final RefreshEngine.FetchCallback<Place> callback) {
+        callback.onFetched();
+        saver.save(placeId, place, photo, attributions, photoReference, new SaveCallback() {
+            @Override
+            public void onSaved() {
+                callback.onSuccess(place);
+            }
+
+            @Override
+            public void onSaveFailed(Exception exception) {
+                callback.onFailure(new SaveException(exception));
+            }
+        });
+    }
+}
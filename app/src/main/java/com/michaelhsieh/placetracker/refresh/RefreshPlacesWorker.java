@@ -0,0 +1,198 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.libraries.places.api.model.Place;
+import com.michaelhsieh.placetracker.R;
+import com.michaelhsieh.placetracker.database.RefreshCheckpoint;
+import com.michaelhsieh.placetracker.models.QueuedPlace;
+import com.michaelhsieh.placetracker.places.PlacesGateway;
+import com.michaelhsieh.placetracker.places.PlacesGateways;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/** Refreshes the name, address, and photo of saved places in the background.
+ * <p></p>
+ * Only places that haven't been refreshed for refresh_stale_after_hours are fetched,
+ * and a place's photo is only fetched if its first photo changed.
+ * Places added manually are never fetched, since the Places API doesn't know their Place IDs.
+ * <p></p>
+ * WorkManager keeps the refresh going after the user leaves the app or rotates the screen,
+ * and runs it again if the app's process is stopped. Each place is marked done in the
+ * database as it's saved, so a refresh that runs again only fetches the places left.
+ * Places whose requests kept failing with temporary errors are retried in a later run,
+ * up to MAX_RUN_ATTEMPTS runs.
+ * <p></p>
+ * PlacesGateway callbacks run on the main thread, so the RefreshEngine runs there too.
+ * This worker's thread only waits for the refresh to finish.
+ */
+public class RefreshPlacesWorker extends Worker {
+
+    private static final String TAG = RefreshPlacesWorker.class.getSimpleName();
+
+    // only one refresh runs at a time
+    private static final String WORK_NAME = "refresh_places";
+
+    // how long to wait for the Places API to answer before trying again
+    private static final long REFRESH_TIMEOUT_MILLIS = 15000;
+
+    // most times the refresh runs before places that kept failing are given up on
+    private static final int MAX_RUN_ATTEMPTS = 3;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    // counted down when the refresh finishes or this worker is stopped
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // places that can be retried in a later run
+    private final AtomicInteger gaveUpCount = new AtomicInteger();
+
+    // only used on the main thread
+    private RefreshEngine<Place> engine;
+
+    public RefreshPlacesWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /** Start refreshing the places list once the device is connected,
+     * unless a refresh is already waiting or running.
+     *
+     * @param context The Context to get WorkManager from
+     */
+    public static void enqueue(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RefreshPlacesWorker.class)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        final RefreshCheckpoint checkpoint = new RefreshCheckpoint(context);
+        long staleAfterMillis = TimeUnit.HOURS.toMillis(
+                context.getResources().getInteger(R.integer.refresh_stale_after_hours));
+        try {
+            List<QueuedPlace> queuedPlaces = checkpoint.startOrResume(
+                    System.currentTimeMillis() - staleAfterMillis);
+            final List<String> placeIds = new ArrayList<>(queuedPlaces.size());
+            // the photo each place has, to compare with its refreshed photo metadata
+            final Map<String, String> photoReferences = new HashMap<>(queuedPlaces.size() * 2);
+            for (QueuedPlace queuedPlace : queuedPlaces) {
+                placeIds.add(queuedPlace.getPlaceId());
+                photoReferences.put(queuedPlace.getPlaceId(), queuedPlace.getPhotoReference());
+            }
+
+            final PlacesGateway placesGateway = PlacesGateways.create(context);
+            final int maxRequests = context.getResources().getInteger(R.integer.refresh_max_requests);
+
+            mainHandler.post(() -> startEngine(placesGateway, checkpoint, placeIds, photoReferences,
+                    maxRequests));
+            finished.await();
+
+            if (isStopped()) {
+                // WorkManager runs the refresh again later, which resumes from the checkpoint
+                return Result.retry();
+            }
+            if (gaveUpCount.get() > 0 && getRunAttemptCount() + 1 < MAX_RUN_ATTEMPTS) {
+                Log.w(TAG, gaveUpCount.get() + " places will be retried");
+                return Result.retry();
+            }
+            checkpoint.finish();
+            return Result.success();
+        } catch (InterruptedException e) {
+            return Result.retry();
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        mainHandler.post(() -> {
+            if (engine != null) {
+                engine.cancel();
+            }
+            finished.countDown();
+        });
+    }
+
+    // must be called on the main thread
+    private void startEngine(final PlacesGateway placesGateway, final RefreshCheckpoint checkpoint,
+                             List<String> placeIds, Map<String, String> photoReferences,
+                             int maxRequests) {
+        if (isStopped()) {
+            return;
+        }
+        RefreshFetcher fetcher = new RefreshFetcher(placesGateway, photoReferences, retryPolicy,
+                checkpoint.getMaxPhotoWidth(), checkpoint.getMaxPhotoHeight(),
+                (placeId, place, photo, attributions, photoReference, callback) ->
+                        checkpoint.saveRefreshedPlace(placeId, place.getName(), place.getAddress(), photo,
+                                attributions, photoReference, new RefreshCheckpoint.SaveCallback() {
+                                    @Override
+                                    public void onSaved() {
+                                        mainHandler.post(callback::onSaved);
+                                    }
+
+                                    @Override
+                                    public void onSaveFailed(Exception exception) {
+                                        mainHandler.post(() -> callback.onSaveFailed(exception));
+                                    }
+                                }));
+        RefreshEngine.Scheduler scheduler = new RefreshEngine.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                mainHandler.postDelayed(task, delayMillis);
+            }
+        };
+
+        engine = new RefreshEngine<>(fetcher, scheduler, retryPolicy, maxRequests,
+                REFRESH_TIMEOUT_MILLIS, new Random());
+        engine.start(placeIds, new RefreshEngine.Listener<Place>() {
+            @Override
+            public void onItemFinished(RefreshEngine.Outcome<Place> outcome) {
+                if (outcome.getStatus() == RefreshEngine.Outcome.Status.REFRESHED) {
+                    return;
+                }
+                Exception exception = outcome.getException();
+                Log.e(TAG, "Place not refreshed: " + outcome.getPlaceId() + " after "
+                        + outcome.getAttempts() + " attempts: " + exception.getMessage());
+                if (exception instanceof ApiException) {
+                    Log.e(TAG, "status code: " + ((ApiException) exception).getStatusCode());
+                }
+                if (outcome.getStatus() == RefreshEngine.Outcome.Status.FAILED) {
+                    checkpoint.markDone(outcome.getPlaceId());
+                } else {
+                    gaveUpCount.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onFinished(List<RefreshEngine.Outcome<Place>> outcomes) {
+                finished.countDown();
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.libraries.places.api.net.PlacesStatusCodes;
+
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+/** Decides whether a failed Places SDK request is tried again, and how long to wait first.
+ * <p></p>
+ * Only errors that may go away on their own are retried, ex. a dropped connection
+ * or too many requests at once. A place that doesn't exist fails right away.
+ * The wait doubles after each attempt, and a random part of it is skipped,
+ * so requests that failed together don't all retry at the same moment.
+ */
+public class RetryPolicy {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 4;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 8000;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /** Create a RetryPolicy.
+     *
+     * @param maxAttempts The most times to send a request, including the first time
+     * @param baseDelayMillis The longest wait before the first retry
+     * @param maxDelayMillis The longest wait before any retry
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /** Check whether a request that failed with an exception may succeed if it's sent again.
+     *
+     * @param exception The exception the request failed with
+     * @return true if the request should be retried
+     */
+    public boolean isRetryable(Exception exception) {
+        if (exception instanceof TimeoutException) {
+            // no response, ex. the connection was lost
+            return true;
+        }
+        if (exception instanceof RefreshFetcher.SaveException) {
+            // ex. the database was busy
+            return true;
+        }
+        return exception instanceof ApiException
+                && isTransientStatus(((ApiException) exception).getStatusCode());
+    }
+
+    static boolean isTransientStatus(int statusCode) {
+        switch (statusCode) {
+            case CommonStatusCodes.NETWORK_ERROR:
+            case CommonStatusCodes.TIMEOUT:
+            case CommonStatusCodes.INTERRUPTED:
+            case CommonStatusCodes.INTERNAL_ERROR:
+            case PlacesStatusCodes.OVER_QUERY_LIMIT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Get how long to wait before retrying a request.
+     *
+     * @param attempt How many times the request has been sent, at least 1
+     * @param random Picks the part of the wait to skip
+     * @return The wait in milliseconds, between half and all of the backoff for this attempt
+     */
+    long getDelayMillis(int attempt, Random random) {
+        long backoff = baseDelayMillis;
+        for (int i = 1; i < attempt && backoff < maxDelayMillis; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxDelayMillis);
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * (backoff - half));
+    }
+}
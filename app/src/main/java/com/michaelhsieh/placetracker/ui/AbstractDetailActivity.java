@@ -171,6 +171,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
             if (visits != null) {
                 // update last visit
                 showOrHideLastVisit();
+                onVisitsChanged();
             }
             Log.d(TAG, "editClicked: done rearranging visits");
         }
@@ -243,8 +244,8 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
                 // create delete visit message
                 // Are you sure you want to delete this visit on [date] at [time]?
                 String deleteVisitMessage = getResources().getString(R.string.delete_visit_message)
-                        + visitToDelete.getDate() + getResources().getString(R.string.at) +
-                        visitToDelete.getTime() +
+                        + VisitFormatter.formatDate(visitToDelete) + getResources().getString(R.string.at) +
+                        VisitFormatter.formatTime(visitToDelete) +
                         getResources().getString(R.string.question_mark);
 
                 new AlertDialog.Builder(activity)
@@ -379,6 +380,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
 
         // update last visit
         showOrHideLastVisit();
+        onVisitsChanged();
     }
 
     /** Update an item in the RecyclerView
@@ -397,6 +399,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
         // update last visit
         // need this method if the visit that was updated was the last visit
         showOrHideLastVisit();
+        onVisitsChanged();
     }
 
     /** Delete an item from the RecyclerView
@@ -415,6 +418,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
 
         // update last visit
         showOrHideLastVisit();
+        onVisitsChanged();
     }
 
     /** Move an item from one position to another in the RecyclerView.
@@ -433,6 +437,12 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
         adapter.notifyItemMoved(fromPosition + NUM_VISIT_GROUPS, toPosition + NUM_VISIT_GROUPS);
     }
 
+    /** Called after a visit is added, edited, or deleted, or the user is done moving visits.
+     * Does nothing by default, since DetailActivity only saves visits when its save button is clicked.
+     */
+    protected void onVisitsChanged() {
+    }
+
     protected void showOrHideLastVisit() {
         if (place.getNumVisits() == 0) {
             lastVisitLabel.setVisibility(View.GONE);
@@ -442,7 +452,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
             lastVisitDisplay.setVisibility(View.VISIBLE);
             int lastIndex = place.getNumVisits() - 1;
             Visit lastVisit = visits.get(lastIndex);
-            String lastVisitString = lastVisit.getDate() + getString(R.string.at) + lastVisit.getTime();
+            String lastVisitString = VisitFormatter.formatDate(lastVisit) + getString(R.string.at) + VisitFormatter.formatTime(lastVisit);
             lastVisitDisplay.setText(lastVisitString);
         }
     }
@@ -496,6 +506,8 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
 
                 // create a new Visit with the Calendar matching user's picked date and time
                 Visit updatedVisit = new Visit(calendar);
+                // keep the original Visit's row ID so its row is updated instead of replaced
+                updatedVisit.setId(visit.getId());
                 // update the original Visit by replacing it with the new one
                 updateSingleItem(pos, updatedVisit);
 
@@ -516,7 +528,7 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
             public void onClick(View view) {
                 // label is only used by developer, can retrieve by using clip.getDescription()
                 String label = getString(R.string.visit_date_time_copy_label);
-                String text = visit.getDate() + getApplicationContext().getResources().getString(R.string.at) + visit.getTime();
+                String text = VisitFormatter.formatDate(visit) + getApplicationContext().getResources().getString(R.string.at) + VisitFormatter.formatTime(visit);
                 ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
                 ClipData clip = ClipData.newPlainText(label, text);
                 if (clipboard != null) {
@@ -535,8 +547,8 @@ public abstract class AbstractDetailActivity extends AppCompatActivity implement
                 // create delete visit message
                 // Are you sure you want to delete this visit on [date] at [time]?
                 String deleteVisitMessage = getResources().getString(R.string.delete_visit_message)
-                        + visit.getDate() + getResources().getString(R.string.at) +
-                        visit.getTime() +
+                        + VisitFormatter.formatDate(visit) + getResources().getString(R.string.at) +
+                        VisitFormatter.formatTime(visit) +
                         getResources().getString(R.string.question_mark);
 
                 new AlertDialog.Builder(activity)
@@ -14,12 +14,9 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Build;
 import android.os.Bundle;
 import android.text.Html;
-import android.util.Base64;
-import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
@@ -31,12 +28,13 @@ import android.widget.Toast;
 
 import com.michaelhsieh.placetracker.R;
 import com.michaelhsieh.placetracker.database.PlaceViewModel;
+import com.michaelhsieh.placetracker.database.VisitCodec;
 import com.michaelhsieh.placetracker.models.expandablegroup.VisitGroup;
 import com.michaelhsieh.placetracker.models.PlaceModel;
 import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+import com.michaelhsieh.placetracker.photo.PhotoLoader;
 import com.michaelhsieh.placetracker.widget.PlaceTrackerWidgetDisplayService;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
@@ -47,9 +45,6 @@ public class DetailActivity extends AbstractDetailActivity {
 
     private static final String TAG = DetailActivity.class.getSimpleName();
 
-    // maximum number of visits in list to prevent TransactionTooLargeException when rotating device
-    public static final int MAX_NUM_VISITS = 150;
-
     // key to get the visit list after ex. device rotated
     private static final String STATE_VISIT_LIST = "visit_list";
 
@@ -61,6 +56,12 @@ public class DetailActivity extends AbstractDetailActivity {
     // TextView to display photo's attributions text
     TextView attributionsText;
 
+    // The path or Base64 String of the photo shown or being decoded,
+    // or null if the place has no photo
+    private String shownPhotoKey;
+    // the photo being decoded, or null if none is
+    private PhotoLoader.Request photoRequest;
+
     // PlaceViewModel to get clicked place by Place ID
     PlaceViewModel viewModel;
 
@@ -176,8 +177,9 @@ public class DetailActivity extends AbstractDetailActivity {
                         // else, use the visits list already in use. The user may have
                         // edited this list before rotation, ex. added and deleted visits
                         else {
-                            if (savedInstanceState.getParcelableArrayList(STATE_VISIT_LIST) != null) {
-                                setVisits(savedInstanceState.getParcelableArrayList(STATE_VISIT_LIST));
+                            byte[] savedVisits = savedInstanceState.getByteArray(STATE_VISIT_LIST);
+                            if (savedVisits != null) {
+                                setVisits(VisitCodec.decode(savedVisits));
                                 getPlace().setVisits(getVisits());
                                 numVisits = getPlace().getNumVisits();
                             } else {
@@ -263,17 +265,60 @@ public class DetailActivity extends AbstractDetailActivity {
     }
 
     /** Display place photo and attribution text, if available.
-     *
+     * The photo is decoded in the background, and isn't decoded again
+     * when the place is observed again with the same photo.
      */
     private void setUpPhoto() {
         // display bitmap photo if available
+        String photoPath = getPlace().getPhotoPath();
+        // photo of a place saved before photos were stored as files,
+        // if it hasn't been moved to a file yet
         String base64String = getPlace().getBase64String();
         // display photo's attribution text if available
-        String attributions = getPlace().getAttributions();
-        if (base64String != null && !base64String.isEmpty()) {
-            // decode Base64 String to bitmap
-            Bitmap bitmap = decodeBase64StringToBitmap(base64String);
+        final String attributions = getPlace().getAttributions();
+
+        String photoKey = null;
+        if (photoPath != null) {
+            photoKey = photoPath;
+        } else if (base64String != null && !base64String.isEmpty()) {
+            photoKey = base64String;
+        }
+
+        if (photoKey == null) {
+            cancelPhotoRequest();
+            shownPhotoKey = null;
+            photo.setVisibility(View.GONE);
+            attributionsText.setVisibility(View.GONE);
+            return;
+        }
+        if (photoKey.equals(shownPhotoKey)) {
+            // this photo is already shown or being decoded
+            return;
+        }
 
+        cancelPhotoRequest();
+        shownPhotoKey = photoKey;
+        // decode the photo at the size of the ImageView
+        int photoWidth = getResources().getDimensionPixelSize(R.dimen.photo_width);
+        int photoHeight = getResources().getDimensionPixelSize(R.dimen.photo_height);
+        photoRequest = PhotoLoader.getInstance(this).load(getPlace().getPlaceId(),
+                getPlace().getPhotoHash(), photoPath, base64String,
+                photoWidth, photoHeight, new PhotoLoader.Callback() {
+                    @Override
+                    public void onPhotoLoaded(Bitmap bitmap) {
+                        photoRequest = null;
+                        showPhoto(bitmap, attributions);
+                    }
+                });
+    }
+
+    /** Show a decoded photo and its attribution text.
+     *
+     * @param bitmap The photo, or null if it couldn't be decoded
+     * @param attributions The attribution text of the photo
+     */
+    private void showPhoto(Bitmap bitmap, String attributions) {
+        if (bitmap != null) {
             photo.setVisibility(View.VISIBLE);
             photo.setImageBitmap(bitmap);
 
@@ -295,6 +340,14 @@ public class DetailActivity extends AbstractDetailActivity {
         }
     }
 
+    // stop waiting for a photo that isn't needed anymore
+    private void cancelPhotoRequest() {
+        if (photoRequest != null) {
+            photoRequest.cancel();
+            photoRequest = null;
+        }
+    }
+
     /** Set click listener for add visit button.
      *
      */
@@ -365,12 +418,23 @@ public class DetailActivity extends AbstractDetailActivity {
                 } else {
                     // Save the user's current EditText data for name, address, and notes.
                     // Visits should already be added and Place ID should stay the same.
-                    getPlace().setName(nameDisplay.getText().toString());
-                    getPlace().setAddress(addressDisplay.getText().toString());
-                    getPlace().setNotes(notesDisplay.getText().toString());
-
-                    // update place in the database
-                    viewModel.update(getPlace());
+                    String id = getPlace().getPlaceId();
+                    String name = nameDisplay.getText().toString();
+                    String address = addressDisplay.getText().toString();
+                    String notes = notesDisplay.getText().toString();
+
+                    // update only the columns the user changed in the database
+                    if (!name.equals(getPlace().getName()) || !address.equals(getPlace().getAddress())) {
+                        getPlace().setName(name);
+                        getPlace().setAddress(address);
+                        viewModel.updateNameAndAddress(id, name, address);
+                    }
+                    if (!notes.equals(getPlace().getNotes())) {
+                        getPlace().setNotes(notes);
+                        viewModel.updateNotes(id, notes);
+                    }
+                    // only the visits that changed are written
+                    viewModel.updateVisits(id, getPlace().getVisits());
                     // get the saved place's name, address, and number of visits and
                     // update the widget
                     PlaceTrackerWidgetDisplayService.startActionUpdatePlaceTrackerWidgets(DetailActivity.this,
@@ -406,6 +470,13 @@ public class DetailActivity extends AbstractDetailActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // don't show the photo in an Activity that's gone
+        cancelPhotoRequest();
+    }
+
     /** To save the expand and collapse state of the adapter,
     you have to explicitly call through to the adapter's
     onSaveInstanceState() and onRestoreInstanceState() in the calling Activity. */
@@ -416,28 +487,14 @@ public class DetailActivity extends AbstractDetailActivity {
             getAdapter().onSaveInstanceState(outState);
         }
 
-        // save the visit list on configuration change, ex. device rotated
-        if (getVisits() != null && getVisits().size() < MAX_NUM_VISITS) {
-            outState.putParcelableArrayList(STATE_VISIT_LIST, new ArrayList<>(getVisits()));
-        } else if (getVisits() != null) {
-            Log.e(TAG, "visit list is too large. Not placing in outState bundle.");
+        // save the visit list on configuration change, ex. device rotated.
+        // The visits are encoded in a few bytes each, so even a long list
+        // doesn't cause a TransactionTooLargeException.
+        if (getVisits() != null) {
+            outState.putByteArray(STATE_VISIT_LIST, VisitCodec.encode(getVisits()));
         }
 
         // save whether the user was editing visits or not
         outState.putBoolean(STATE_IS_EDITABLE, isEditable());
     }
-
-    /** Decode Base64 String to Bitmap
-     *
-     * @param base64Image The Base64 String to be decoded into a Bitmap
-     * @return A Bitmap
-     */
-    private Bitmap decodeBase64StringToBitmap(String base64Image) {
-        byte[] data = Base64.decode(base64Image, Base64.DEFAULT);
-        Bitmap bitmap;
-        BitmapFactory.Options opt = new BitmapFactory.Options();
-        opt.inMutable = true;
-        bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opt);
-        return bitmap;
-    }
 }
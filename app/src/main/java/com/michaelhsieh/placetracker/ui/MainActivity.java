@@ -4,8 +4,10 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -21,7 +23,6 @@ import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.os.Build;
 import android.os.Bundle;
-import android.util.Base64;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -36,38 +37,40 @@ import com.google.android.gms.ads.MobileAds;
 import com.google.android.gms.ads.initialization.InitializationStatus;
 import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
 import com.google.android.gms.common.api.ApiException;
-import com.google.android.gms.common.api.Status;
-import com.google.android.libraries.places.api.Places;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
 import com.google.android.libraries.places.api.model.PhotoMetadata;
 import com.google.android.libraries.places.api.model.Place;
-import com.google.android.libraries.places.api.net.FetchPhotoRequest;
-import com.google.android.libraries.places.api.net.FetchPlaceRequest;
-import com.google.android.libraries.places.api.net.PlacesClient;
-import com.google.android.libraries.places.widget.AutocompleteSupportFragment;
-import com.google.android.libraries.places.widget.listener.PlaceSelectionListener;
 import com.michaelhsieh.placetracker.R;
+import com.michaelhsieh.placetracker.database.PlaceRepository;
+import com.michaelhsieh.placetracker.database.PlaceSort;
 import com.michaelhsieh.placetracker.database.PlaceViewModel;
 import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+import com.michaelhsieh.placetracker.models.RefreshProgress;
+import com.michaelhsieh.placetracker.places.PlacesGateway;
+import com.michaelhsieh.placetracker.places.PlacesGateways;
+import com.michaelhsieh.placetracker.refresh.PhotoReference;
+import com.michaelhsieh.placetracker.refresh.RefreshPlacesWorker;
 import com.michaelhsieh.placetracker.widget.PlaceTrackerWidgetDisplayService;
 
-import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
-import static com.michaelhsieh.placetracker.ui.ManualPlaceDetailActivity.EXTRA_MANUAL_ADDED_PLACE;
+import static com.michaelhsieh.placetracker.ui.ManualPlaceDetailActivity.EXTRA_MANUAL_ADDED_PLACE_ID;
 
 public class MainActivity extends AppCompatActivity implements PlaceAdapter.ItemClickListener, StartDragListener {
 
     private static final String TAG = MainActivity.class.getSimpleName();
 
-    // key to get the clicked place's position when Activity recreated, ex. when device rotated
-    private static final String STATE_CLICKED_POSITION = "position";
+    // key to get the clicked place's Place ID when Activity recreated, ex. when device rotated
+    private static final String STATE_CLICKED_ID = "clicked_place_id";
 
     // key to check whether user was editing before Activity recreated, ex. when device rotated
     private static final String STATE_IS_EDITABLE = "is_editable";
 
+    // key to get the text the user was searching for when Activity recreated, ex. when device rotated
+    private static final String STATE_SEARCH_TEXT = "search_text";
+
     // PlaceModel ID key when using Intent
     public static final String EXTRA_PLACE_ID = "PlaceModel_ID";
 
@@ -77,26 +80,26 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
     // request code when opening ManualPlaceDetailActivity
     public static final int MANUAL_PLACE_DETAIL_ACTIVITY_REQUEST_CODE = 1;
 
-    // list of places user selects from search results
-    private List<PlaceModel> places;
+    // list of places user selects from search results.
+    // Only the pages of summaries near the rows on screen are loaded.
+    private PagedList<PlaceSummary> places;
 
     private PlaceAdapter adapter;
 
     // TextView displaying empty list message
     TextView emptyListDisplay;
 
-    // key of the selected place when user clicks a place in list
-    private int clickedPlacePos = -1;
+    // Place ID of the selected place when user clicks a place in list
+    private String clickedPlaceId;
 
     private PlaceViewModel placeViewModel;
 
 
-    PlacesClient placesClient;
-
-    // place counter to send refreshed place info to MainActivity once all places fetched
-    private int placeCounter = 0;
+    // sends requests to the Places API, or to a fake if USE_FAKE_PLACES is set in a debug build
+    PlacesGateway placesGateway;
 
-    private ArrayList<Place> refreshedPlaces;
+    // progress of the refresh running in the background, or null before it's loaded
+    private RefreshProgress refreshProgress;
 
     // clickable TextView to edit with drag and drop
     TextView editDisplay;
@@ -107,6 +110,21 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
     // ItemTouchHelper to drag and drop places
     private ItemTouchHelper itemTouchHelper;
 
+    // The order of the places list.
+    // Places can only be dragged and dropped in the order the user arranged them.
+    private PlaceSort placeSort = PlaceSort.MANUAL;
+
+    // place data to get when the user selects a place to add
+    private static final List<Place.Field> SELECTED_PLACE_FIELDS =
+            Arrays.asList(Place.Field.ID, Place.Field.NAME, Place.Field.ADDRESS, Place.Field.PHOTO_METADATAS);
+
+    // suggests saved places and new places under the search bar
+    private PlaceSuggestions placeSuggestions;
+
+    // The text in the search bar, or null if the user isn't searching.
+    // Search results are shown instead of the whole places list while the user is searching.
+    private String searchText;
+
     // banner ad
     private AdView adView;
 
@@ -133,8 +151,10 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
 
         // Check whether we're recreating a previously destroyed instance
         if (savedInstanceState != null) {
-            // restore clicked place position from saved state
-            clickedPlacePos = savedInstanceState.getInt(STATE_CLICKED_POSITION);
+            // restore clicked place ID from saved state
+            clickedPlaceId = savedInstanceState.getString(STATE_CLICKED_ID);
+            // the search bar is opened again when the menu is created
+            searchText = savedInstanceState.getString(STATE_SEARCH_TEXT);
         }
 
         // get TextView displaying empty list message
@@ -149,6 +169,9 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         // set up the RecyclerView
         RecyclerView recyclerView = findViewById(R.id.rv_places);
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        // bind the rows about to scroll on screen between frames,
+        // so their thumbnails start decoding before they're shown
+        layoutManager.setItemPrefetchEnabled(true);
         recyclerView.setLayoutManager(layoutManager);
         // add a divider
         DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(recyclerView.getContext(),
@@ -156,17 +179,23 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         // use a custom white divider
         dividerItemDecoration.setDrawable(getResources().getDrawable(R.drawable.place_divider));
         recyclerView.addItemDecoration(dividerItemDecoration);
-        adapter = new PlaceAdapter(this, places, this);
+        adapter = new PlaceAdapter(this, this);
         adapter.setClickListener(this);
         recyclerView.setAdapter(adapter);
 
         placeViewModel = new ViewModelProvider(this).get(PlaceViewModel.class);
 
-        // add an observer for the LiveData returned by getAllPlaces()
+        // delete drafts left behind, ex. if the app was stopped while adding a place.
+        // A place may still be being added under this Activity, so recent drafts are kept.
+        if (savedInstanceState == null) {
+            placeViewModel.deleteAbandonedDrafts();
+        }
+
+        // add an observer for the LiveData returned by getPlaceSummaries()
         // The onChanged() method fires when the observed data changes and the activity is in the foreground
-        placeViewModel.getAllPlaces().observe(this, new Observer<List<PlaceModel>>() {
+        placeViewModel.getPlaceSummaries().observe(this, new Observer<PagedList<PlaceSummary>>() {
             @Override
-            public void onChanged(@Nullable final List<PlaceModel> updatedPlaces) {
+            public void onChanged(@Nullable final PagedList<PlaceSummary> updatedPlaces) {
 
                 // updatedPlaces should be an empty list in onCreate, ex. when app first
                 // starts up and after rotation, not null
@@ -175,11 +204,14 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
                     // set places list to updated places list
                     places = updatedPlaces;
 
-                    // Update the cached copy of the places in the adapter.
-                    adapter.setPlaces(places);
+                    // Update the cached copy of the places in the adapter,
+                    // unless search results are shown instead
+                    if (!isSearching()) {
+                        adapter.submitList(places);
 
-                    // Display empty list message if list is empty.
-                    checkEmpty();
+                        // Display empty list message if list is empty.
+                        checkEmpty();
+                    }
                 } else {
                     Log.e(TAG, "updated places list is null!");
                 }
@@ -187,6 +219,40 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
             }
         });
 
+        // load the places list again whenever the user picks a new order
+        placeViewModel.getPlaceSort().observe(this, new Observer<PlaceSort>() {
+            @Override
+            public void onChanged(PlaceSort sort) {
+                placeSort = sort;
+                if (placeSort != PlaceSort.MANUAL && isEditable) {
+                    editClicked(editDisplay);
+                }
+                showEditDisplayIfSortable();
+                // check the new order in the menu
+                invalidateOptionsMenu();
+            }
+        });
+
+        // show the places found each time the user changes the search text
+        placeViewModel.getSearchResults().observe(this, new Observer<PagedList<PlaceSummary>>() {
+            @Override
+            public void onChanged(@Nullable PagedList<PlaceSummary> foundPlaces) {
+                if (foundPlaces != null && isSearching()) {
+                    adapter.submitList(foundPlaces);
+                }
+            }
+        });
+
+        // show how far the background refresh is, even if it started before this Activity
+        placeViewModel.getRefreshProgress().observe(this, new Observer<RefreshProgress>() {
+            @Override
+            public void onChanged(RefreshProgress progress) {
+                boolean wasRefreshing = refreshProgress != null && refreshProgress.isRefreshing();
+                refreshProgress = progress;
+                showRefreshProgress(wasRefreshing);
+            }
+        });
+
         // swipe left to delete a place
         // drag and drop to rearrange place
         setUpItemTouchHelper(recyclerView);
@@ -199,70 +265,47 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
             }
         }
 
-        // Initialize the SDK
-        Places.initialize(getApplicationContext(), getString(R.string.google_places_api_key));
-
-        // Create a new Places client instance
-        placesClient = Places.createClient(this);
-
-        // Initialize the AutocompleteSupportFragment.
-        final AutocompleteSupportFragment autocompleteFragment = (AutocompleteSupportFragment)
-                getSupportFragmentManager().findFragmentById(R.id.autocomplete_fragment);
-
-        // Specify the types of place data to return.
-        autocompleteFragment.setPlaceFields(Arrays.asList(Place.Field.ID, Place.Field.NAME, Place.Field.ADDRESS, Place.Field.PHOTO_METADATAS));
+        // Initialize the SDK and create the gateway to the Places API
+        placesGateway = PlacesGateways.create(this);
+    }
 
-        // Set up a PlaceSelectionListener to handle the response.
-        autocompleteFragment.setOnPlaceSelectedListener(new PlaceSelectionListener() {
+    /** Add a place the user selected from the search bar, and fetch its photo.
+     *
+     * @param place The place returned by the Places API
+     */
+    private void addSelectedPlace(Place place) {
+        String name = place.getName();
+        String id = place.getId();
+        String address = place.getAddress();
+
+        PlaceModel newPlace = new PlaceModel(id, name, address);
+        // the place's info was just fetched, so it isn't refreshed again until it's stale
+        newPlace.setLastRefreshedAt(System.currentTimeMillis());
+
+        // Get the photo metadata.
+        final List<PhotoMetadata> metadata = place.getPhotoMetadatas();
+
+        // insert place into the database at the end of the list,
+        // unless the place is already in the list.
+        // Observer's onChanged() method updates the adapter
+        placeViewModel.insertIfNew(newPlace, new PlaceRepository.ResultListener<Boolean>() {
             @Override
-            public void onPlaceSelected(@NonNull Place place) {
-
-                String name = place.getName();
-                String id = place.getId();
-                String address = place.getAddress();
-
-                PlaceModel newPlace = new PlaceModel(id, name, address);
-
-                // Get the photo metadata.
-                final List<PhotoMetadata> metadata = place.getPhotoMetadatas();
-
-                if (isPlaceInList(newPlace)) {
+            public void onResult(Boolean isNewPlace) {
+                if (!isNewPlace) {
                     Toast.makeText(getApplicationContext(), R.string.existing_place_message, Toast.LENGTH_LONG).show();
+                } else if (metadata == null || metadata.isEmpty()) {
+                    Log.v(TAG, "No photo metadata.");
                 } else {
-
-                    if (metadata == null || metadata.isEmpty()) {
-                        Log.v(TAG, "No photo metadata.");
-                    } else {
-                        // get the photo's metadata,
-                        // which will be used to get a bitmap and attribution text
-                        final PhotoMetadata photoMetadata = metadata.get(0);
-                        /* This method uses fetchPhoto(), an asynchronous method.
-                        The method will finish after the place has already been inserted, so
-                        update the place once all photos have been fetched. */
-                        fetchPhotoAndUpdatePlaceWhenFinished(placesClient, newPlace, photoMetadata);
-                    }
-
-                    // set sorted position of the place in Room Database
-                    int sortPosition = 0;
-                    if (places != null && !places.isEmpty()) {
-                        // place will be at last position in list,
-                        // which is size of list before adding this place
-                        sortPosition = places.size();
-                    }
-                    newPlace.setPosition(sortPosition);
-
-                    // insert place into the database
-                    placeViewModel.insert(newPlace);
-                    // Observer's onChanged() method updates the adapter
+                    // get the photo's metadata,
+                    // which will be used to get a bitmap and attribution text
+                    final PhotoMetadata photoMetadata = metadata.get(0);
+                    /* This method uses fetchPhoto(), an asynchronous method.
+                    The method will finish after the place has already been inserted, so
+                    update the place once all photos have been fetched. */
+                    fetchPhotoAndUpdatePlaceWhenFinished(placesGateway, id, photoMetadata);
                 }
             }
-
-            @Override
-            public void onError(@NonNull Status status) {
-                Log.e(TAG, "An error occurred: " + status);
-            }
         });
-
     }
 
     /** Create menu with items, including items to add place manually and refresh places list.
@@ -274,9 +317,143 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.menu_main, menu);
+        setUpSearch(menu.findItem(R.id.action_search));
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(getSortItemId(placeSort)).setChecked(true);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    /** Search the user's places as they type in the search bar,
+     * and suggest saved places and new places to add under it.
+     *
+     * @param searchItem The menu item showing the search bar
+     */
+    private void setUpSearch(MenuItem searchItem) {
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_places_hint));
+        // the search text is restored after rotation, so save it before the search bar is set up
+        final String restoredSearchText = searchText;
+
+        placeSuggestions = new PlaceSuggestions(this, placesGateway, new PlaceSuggestions.SuggestionClickListener() {
+            @Override
+            public void onSavedPlaceClicked(String placeId) {
+                startDetailActivity(placeId);
+            }
+
+            @Override
+            public void onNewPlaceClicked(String placeId, AutocompleteSessionToken sessionToken) {
+                fetchAndAddPlace(placeId, sessionToken);
+            }
+        });
+        placeSuggestions.attach(searchView);
+
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearching();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                stopSearching();
+                return true;
+            }
+        });
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // results are already shown, so only close the keyboard
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (isSearching()) {
+                    searchText = newText;
+                    // the search runs in the background
+                    placeViewModel.setSearchText(newText);
+                    // saved places are suggested right away, new places once the Places API responds
+                    placeSuggestions.update(newText, placeViewModel.getPlaceNameIndex());
+                }
+                return true;
+            }
+        });
+
+        if (restoredSearchText != null) {
+            searchItem.expandActionView();
+            searchView.setQuery(restoredSearchText, false);
+        }
+    }
+
+    /** Show search results instead of the whole places list.
+     * Places can't be dragged and dropped while only some of them are shown.
+     */
+    private void startSearching() {
+        if (isEditable) {
+            editClicked(editDisplay);
+        }
+        editDisplay.setVisibility(View.GONE);
+        emptyListDisplay.setVisibility(View.GONE);
+        // start indexing saved place names before the user types
+        placeViewModel.watchPlaceNames();
+        searchText = "";
+        placeViewModel.setSearchText(searchText);
+    }
+
+    // show the whole places list again
+    private void stopSearching() {
+        searchText = null;
+        placeSuggestions.clear();
+        showEditDisplayIfSortable();
+        if (places != null) {
+            adapter.submitList(places);
+            checkEmpty();
+        }
+    }
+
+    private boolean isSearching() {
+        return searchText != null;
+    }
+
+    // places can only be dragged and dropped when the whole list is shown in the user's order
+    private void showEditDisplayIfSortable() {
+        if (placeSort == PlaceSort.MANUAL && !isSearching()) {
+            editDisplay.setVisibility(View.VISIBLE);
+        } else {
+            editDisplay.setVisibility(View.GONE);
+        }
+    }
+
+    /** Get the menu item of a sort order.
+     *
+     * @param sort The sort order
+     * @return The ID of the menu item
+     */
+    private static int getSortItemId(PlaceSort sort) {
+        switch (sort) {
+            case MOST_VISITED:
+                return R.id.action_sort_most_visited;
+            case RECENTLY_VISITED:
+                return R.id.action_sort_recently_visited;
+            case LEAST_RECENTLY_VISITED:
+                return R.id.action_sort_least_recently_visited;
+            case ALPHABETICAL:
+                return R.id.action_sort_alphabetical;
+            case RECENTLY_ADDED:
+                return R.id.action_sort_recently_added;
+            case MANUAL:
+            default:
+                return R.id.action_sort_manual;
+        }
+    }
+
     /**  Called whenever an item in the options menu is selected.
      *
      * @param item The menu item that was selected
@@ -293,12 +470,30 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
                 return true;
             case R.id.action_refresh:
                 // refresh places list with up-to-date place info
-                refreshPlacesList(placesClient);
+                refreshPlacesList();
                 return true;
             case R.id.action_random_picker:
                 // pick a random place and start its DetailActivity
                 pickRandomPlace();
                 return true;
+            case R.id.action_sort_manual:
+                placeViewModel.setPlaceSort(PlaceSort.MANUAL);
+                return true;
+            case R.id.action_sort_most_visited:
+                placeViewModel.setPlaceSort(PlaceSort.MOST_VISITED);
+                return true;
+            case R.id.action_sort_recently_visited:
+                placeViewModel.setPlaceSort(PlaceSort.RECENTLY_VISITED);
+                return true;
+            case R.id.action_sort_least_recently_visited:
+                placeViewModel.setPlaceSort(PlaceSort.LEAST_RECENTLY_VISITED);
+                return true;
+            case R.id.action_sort_alphabetical:
+                placeViewModel.setPlaceSort(PlaceSort.ALPHABETICAL);
+                return true;
+            case R.id.action_sort_recently_added:
+                placeViewModel.setPlaceSort(PlaceSort.RECENTLY_ADDED);
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
@@ -311,23 +506,59 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
      */
     @Override
     public void onItemClick(View view, int position) {
-        // start DetailActivity
-        Intent intent = new Intent(this, DetailActivity.class);
-        intent.putExtra(EXTRA_PLACE_ID, adapter.getItem(position).getPlaceId());
-        // get the position that was clicked
-        // This will be used to save or delete the place from the DetailActivity buttons
-        clickedPlacePos = position;
-
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        PlaceSummary clickedPlace = adapter.getItem(position);
+        if (clickedPlace == null) {
+            // place is still loading
+            return;
+        }
         // get the place name, address, and number of visits and
         // update the widget using an IntentService
         PlaceTrackerWidgetDisplayService.startActionUpdatePlaceTrackerWidgets(this,
-                adapter.getItem(position).getName(), adapter.getItem(position).getAddress(),
-                adapter.getItem(position).getNumVisits());
+                clickedPlace.getName(), clickedPlace.getAddress(),
+                clickedPlace.getVisitCount());
+
+        startDetailActivity(clickedPlace.getPlaceId());
+    }
+
+    /** Show the details of a saved place.
+     *
+     * @param placeId The Place ID of the place
+     */
+    private void startDetailActivity(String placeId) {
+        // start DetailActivity
+        Intent intent = new Intent(this, DetailActivity.class);
+        intent.putExtra(EXTRA_PLACE_ID, placeId);
+        // get the Place ID that was clicked
+        // This will be used to save or delete the place from the DetailActivity buttons
+        clickedPlaceId = placeId;
 
         startActivityForResult(intent, DETAIL_ACTIVITY_REQUEST_CODE);
     }
 
-    /** Allow the user to drag and drop places or save positions when edit TextView is clicked.
+    /** Get a place the user picked from the search suggestions and add it.
+     *
+     * @param placeId The Place ID of the place
+     * @param sessionToken The token of the autocomplete session the place was suggested in
+     */
+    private void fetchAndAddPlace(String placeId, AutocompleteSessionToken sessionToken) {
+        placesGateway.fetchPlace(placeId, SELECTED_PLACE_FIELDS, sessionToken, new PlacesGateway.Callback<Place>() {
+            @Override
+            public void onSuccess(Place place) {
+                addSelectedPlace(place);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Log.e(TAG, "Place not found: " + exception.getMessage());
+                Toast.makeText(MainActivity.this, R.string.place_fetch_error, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /** Allow the user to drag and drop places, or stop when edit TextView is clicked again.
      *
      * @param view The view clicked
      */
@@ -339,14 +570,12 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
             }
             allowEditing();
         } else {
-            // since user clicked done, disable drag and drop and save positions
+            // since user clicked done, disable drag and drop.
+            // Positions were already saved when each place was dropped.
             editDisplay.setText(getResources().getText(R.string.edit));
             isEditable = false;
+            // hide the drag handles
             adapter.setHandleVisible(isEditable);
-            // force onBindViewHolder again to update holder visibility
-            adapter.notifyDataSetChanged();
-            // update all sorted place positions in Room Database
-            setSortPositionsInDatabase();
         }
     }
 
@@ -358,9 +587,8 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         editDisplay.setText(getResources().getText(R.string.done));
         // allow drag and drop
         isEditable = true;
+        // show the drag handles
         adapter.setHandleVisible(isEditable);
-        // force onBindViewHolder again to update holder visibility
-        adapter.notifyDataSetChanged();
     }
 
     /** Swipe left to delete a place.
@@ -382,17 +610,27 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
                 final int fromPos = viewHolder.getAdapterPosition();
                 final int toPos = target.getAdapterPosition();
                 // move item at fromPos to toPos in adapter.
-                PlaceModel placeToMove = places.get(viewHolder.getAdapterPosition());
-                moveSingleItem(fromPos, toPos, placeToMove);
                 // true if moved, false otherwise
-                return true;
+                return adapter.moveItem(fromPos, toPos);
+            }
+
+            @Override
+            public void clearView(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
+                super.clearView(recyclerView, viewHolder);
+                // the dragged place was dropped
+                setSortPositionsInDatabase();
             }
 
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
                 // get adapter position that was swiped
                 // delete place at that position from the database
-                PlaceModel placeToDelete = places.get(viewHolder.getAdapterPosition());
+                PlaceSummary placeToDelete = adapter.getItem(viewHolder.getAdapterPosition());
+                if (placeToDelete == null) {
+                    // place is still loading
+                    adapter.notifyItemChanged(viewHolder.getAdapterPosition());
+                    return;
+                }
 
                 // create delete place message
                 // Are you sure you want to delete [place] at [address]?
@@ -411,7 +649,7 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
                         .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int which) {
                                 // Continue with delete operation
-                                placeViewModel.delete(placeToDelete);
+                                placeViewModel.deletePlaceById(placeToDelete.getPlaceId());
                                 // Toast.makeText(MainActivity.this, "Place deleted.", Toast.LENGTH_LONG).show();
                             }
                         })
@@ -442,8 +680,9 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         itemTouchHelper.startDrag(viewHolder);
     }
 
-    /** Update sort positions in Room Database.
-     * Used to get all places in the order the user rearranged them.
+    /** Update the sort position in Room Database of the place the user dropped.
+     * The place takes a position between the places it was dropped between,
+     * so only its row is written.
      * <p></p>
      * The positions will not match the places' list indexes if
      * a place is deleted.
@@ -453,26 +692,13 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
      *
      */
     private void setSortPositionsInDatabase() {
-        for (PlaceModel place : places) {
-            place.setPosition(places.indexOf(place));
-            placeViewModel.update(place);
+        PlaceAdapter.Move move = adapter.finishMoving();
+        if (move != null) {
+            // only update the position column
+            placeViewModel.movePlace(move.getPlaceId(), move.getPreviousPlaceId(), move.getNextPlaceId());
         }
     }
 
-    /** Move an item from one position to another in the RecyclerView.
-     * @param fromPosition The starting position of the place
-     * @param toPosition The ending position of the place
-     * @param place The place being moved
-     */
-    private void moveSingleItem(int fromPosition, int toPosition, PlaceModel place) {
-        // update places list
-        places.remove(fromPosition);
-        places.add(toPosition, place);
-
-        // notify adapter
-        adapter.notifyItemMoved(fromPosition, toPosition);
-    }
-
     /** Delete a place or add a manual place when returning to MainActivity.
      *
      * @param requestCode The request code of the Activity that called startActivityForResult
@@ -486,27 +712,20 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         if (requestCode == DETAIL_ACTIVITY_REQUEST_CODE && resultCode == RESULT_OK) {
             if (data != null) {
                 // delete place from the database
-                PlaceModel placeToDelete = places.get(clickedPlacePos);
-                placeViewModel.delete(placeToDelete);
+                if (clickedPlaceId != null) {
+                    placeViewModel.deletePlaceById(clickedPlaceId);
+                }
                 // Observer's onChanged() method updates the adapter
             }
         } else if (requestCode == MANUAL_PLACE_DETAIL_ACTIVITY_REQUEST_CODE && resultCode == RESULT_OK) {
             if (data != null) {
-                PlaceModel manualPlace = data.getParcelableExtra(EXTRA_MANUAL_ADDED_PLACE);
-
-                // set sorted position of the manual place in Room Database
-                if (manualPlace != null) {
-                    int sortPosition = 0;
-                    if (places != null && !places.isEmpty()) {
-                        // place will be at last position in list,
-                        // which is size of list before adding this place
-                        sortPosition = places.size();
-                    }
-                    manualPlace.setPosition(sortPosition);
-                }
+                String manualPlaceId = data.getStringExtra(EXTRA_MANUAL_ADDED_PLACE_ID);
 
-                // insert manually added place into the database
-                placeViewModel.insert(manualPlace);
+                // the manually added place is already saved as a draft,
+                // so show it at the end of the list
+                if (manualPlaceId != null) {
+                    placeViewModel.publishDraft(manualPlaceId);
+                }
                 // Observer's onChanged() method updates the adapter
             }
         }
@@ -520,11 +739,14 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         // Always call the superclass so it can save the view hierarchy state
         super.onSaveInstanceState(savedInstanceState);
 
-        // Save the position of a place that's been clicked
-        savedInstanceState.putInt(STATE_CLICKED_POSITION, clickedPlacePos);
+        // Save the Place ID of a place that's been clicked
+        savedInstanceState.putString(STATE_CLICKED_ID, clickedPlaceId);
 
         // save whether the user was editing places or not
         savedInstanceState.putBoolean(STATE_IS_EDITABLE, isEditable);
+
+        // save the search text, or null if the user wasn't searching
+        savedInstanceState.putString(STATE_SEARCH_TEXT, searchText);
     }
 
     /** Check if connected to Wi-Fi or cellular network.
@@ -565,94 +787,64 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
      *
      */
     private void checkEmpty() {
-        if (places.size() == 0) {
+        if (places.isEmpty()) {
             emptyListDisplay.setVisibility(View.VISIBLE);
         } else {
             emptyListDisplay.setVisibility(View.GONE);
         }
     }
 
-    /** Checks if user is trying to add a place that already exists in places list.
-     *
-     * @param place The place that is being added
-     * @return boolean indicating if the place is already in the list
-     */
-    private boolean isPlaceInList(PlaceModel place) {
-        for (PlaceModel existingPlace: places) {
-            // compare existing places with new place by Place ID
-            if (existingPlace.getPlaceId().equals(place.getPlaceId())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /** Get the photo from place metadata as a Bitmap encoded as Base64 String and
-     * set as place Base64 String. This uses an asynchronous method fetchPhoto(), so
+    /** Get the photo from place metadata as a Bitmap and save it to a file
+     * as the place's photo. This uses an asynchronous method fetchPhoto(), so
      * by the time it finishes the place has already been inserted.
-     * When the Base64 String has been added the place is updated.
+     * When the photo has been saved the place is updated.
      *
-     * @param placesClient The places client required to initialize the Google Places SDK
-     * @param placeModel The selected place
+     * @param placesGateway The gateway to the Places API
+     * @param placeId The Place ID of the selected place
      * @param photoMetadata The photo metadata of a place, used to get a single
      *                      Bitmap and attribution text
      */
-    private void fetchPhotoAndUpdatePlaceWhenFinished(PlacesClient placesClient, PlaceModel placeModel, PhotoMetadata photoMetadata) {
+    private void fetchPhotoAndUpdatePlaceWhenFinished(PlacesGateway placesGateway, final String placeId, PhotoMetadata photoMetadata) {
         // Get the attribution text.
+        // It's saved with the photo once the photo has been fetched.
         final String attributions = photoMetadata.getAttributions();
-        placeModel.setAttributions(attributions);
-
-        // Must set max width and height in pixels. The image's default width and height
-        // causes a TransactionTooLargeException and the app crashes
-
-        // Create a FetchPhotoRequest.
-        final FetchPhotoRequest photoRequest = FetchPhotoRequest.builder(photoMetadata)
-                .setMaxWidth(500)
-                .setMaxHeight(300)
-                .build();
-        placesClient.fetchPhoto(photoRequest).addOnSuccessListener((fetchPhotoResponse) -> {
-
-            Bitmap bitmap = fetchPhotoResponse.getBitmap();
+        // saved with the photo, so refreshing doesn't fetch the same photo again
+        final String photoReference = PhotoReference.of(photoMetadata);
 
-            // convert bitmap to Base64 String
-            String base64Image = encodeBitmapToBase64String(bitmap);
-
-            // update the selected place with the Base64 String
-            placeModel.setBase64String(base64Image);
-            placeViewModel.update(placeModel);
+        // Fetch the photo at about the largest size it's shown, so no pixels are wasted.
+        placesGateway.fetchPhoto(photoMetadata, placeViewModel.getMaxPhotoWidth(),
+                placeViewModel.getMaxPhotoHeight(), new PlacesGateway.Callback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap bitmap) {
+                // Save the photo to a file and update the selected place with the file.
+                // The photo is scaled down and compressed in the background.
+                placeViewModel.savePhoto(placeId, bitmap, attributions, photoReference);
+            }
 
-        }).addOnFailureListener((exception) -> {
-            if (exception instanceof ApiException) {
-                final ApiException apiException = (ApiException) exception;
-                Log.e(TAG, "Place not found: " + exception.getMessage());
-                final int statusCode = apiException.getStatusCode();
-                Log.e(TAG, "Status code: " + statusCode);
+            @Override
+            public void onFailure(Exception exception) {
+                if (exception instanceof ApiException) {
+                    final ApiException apiException = (ApiException) exception;
+                    Log.e(TAG, "Place not found: " + exception.getMessage());
+                    final int statusCode = apiException.getStatusCode();
+                    Log.e(TAG, "Status code: " + statusCode);
+                }
             }
         });
     }
 
-    /** Encode Bitmap to Base64 String.
+    /** Start a background job to get refreshed info on user's places.
      *
-     * @param bitmap The Bitmap to be encoded into a String
-     * @return A String that's in Base64 format. Used to store Bitmap into Room database
-     */
-    private String encodeBitmapToBase64String(Bitmap bitmap) {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 100, byteArrayOutputStream); // Could be Bitmap.CompressFormat.PNG or Bitmap.CompressFormat.WEBP
-        byte[] byteArrayInput = byteArrayOutputStream.toByteArray();
-        return Base64.encodeToString(byteArrayInput, Base64.DEFAULT);
-    }
-
-    /** Starts an IntentService to get refreshed info on user's places in the background.
-     *
-     * The IntentService gets refreshed place info from the Google Places SDK using the Place ID
-     * of each place in the places list. The IntentService sends this info back to MainActivity.
-     * Then the Room Database is updated with the refreshed info.
+     * The job gets refreshed place info from the Google Places SDK using the Place ID
+     * of each place in the places list, a few places at a time, and updates the
+     * Room Database as each place is fetched. It keeps running if this Activity is closed.
      *
      */
-    private void refreshPlacesList(PlacesClient client) {
+    private void refreshPlacesList() {
+        if (refreshProgress != null && refreshProgress.isRefreshing()) {
+            Toast.makeText(this, R.string.refresh_in_progress, Toast.LENGTH_SHORT).show();
         // only refresh if Internet is connected
-        if (isNetworkConnected()) {
+        } else if (isNetworkConnected()) {
 
             // show confirmation dialog and refresh if user confirms
             new AlertDialog.Builder(MainActivity.this)
@@ -667,26 +859,9 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
                             // continue and refresh places
                             Toast.makeText(MainActivity.this, R.string.refresh_notification_title, Toast.LENGTH_SHORT).show();
 
-                            ArrayList<String> placeIds = new ArrayList<>();
-
-                            PlaceModel place;
-                            for (int i = 0; i < places.size(); i++) {
-                                place = places.get(i);
-                                placeIds.add(place.getPlaceId());
-                            }
-
-                            // reset place counter to 0, ex. when doing second refresh
-                            placeCounter = 0;
-
-                            // initialize refreshed places list
-                            refreshedPlaces = new ArrayList<>();
-
-                            if (!placeIds.isEmpty()) {
-                                int placeIdsSize = placeIds.size();
-                                for (int i = 0; i < placeIdsSize; i++) {
-                                    fetchAllPlacesById(client, placeIds.get(i), placeIdsSize);
-                                }
-                            }
+                            // the job reads every Place ID from the database,
+                            // and does nothing if a refresh is already running
+                            RefreshPlacesWorker.enqueue(MainActivity.this);
 
                         }
                     })
@@ -702,140 +877,57 @@ public class MainActivity extends AppCompatActivity implements PlaceAdapter.Item
         }
     }
 
-    /** Fetch refreshed place info using the Place ID,
-     * or just log message if the Place ID can't be found.
-     *
-     * The info consists of a place's ID, name, address, and first photo's metadata.
+    /** Show the refresh progress under the app's title, and a message when the refresh finishes.
      *
-     * @param placesClient The places client, initialized by the IntentService
-     * @param placeId The Place ID of a place in user's places list
-     * @param listSize The size of the List of Place IDs
+     * @param wasRefreshing Whether a refresh was running before the progress changed
      */
-    private void fetchAllPlacesById(PlacesClient placesClient, String placeId, int listSize) {
-
-        // Specify the fields to return.
-        List<Place.Field> placeFields = Arrays.asList(Place.Field.ID, Place.Field.NAME, Place.Field.ADDRESS, Place.Field.PHOTO_METADATAS);
-
-        // Construct a request object, passing the place ID and fields array.
-        FetchPlaceRequest request = FetchPlaceRequest.builder(placeId, placeFields)
-                .build();
-
-        // Add a listener to handle the response.
-        placesClient.fetchPlace(request).addOnSuccessListener((response) -> {
-            Place place = response.getPlace();
-
-            refreshedPlaces.add(place);
-
-            // when last place has been fetched, send the info to MainActivity
-            if (placeCounter == listSize - 1) {
-                updatePlacesWithRefreshedInfo(refreshedPlaces);
-            }
-            // increase place counter by 1
-            incrementPlaceCounter();
-        }).addOnFailureListener((exception) -> {
-            if (exception instanceof ApiException) {
-                ApiException apiException = (ApiException) exception;
-                int statusCode = apiException.getStatusCode();
-                // Handle error with given status code.
-                Log.e(TAG, "Place not found: " + exception.getMessage());
-                Log.e(TAG, "status code: " +  statusCode);
-            }
-            // when last place has been fetched, send the info to MainActivity
-            if (placeCounter == listSize - 1) {
-                updatePlacesWithRefreshedInfo(refreshedPlaces);
-            }
-            // still increase place counter by 1 because
-            // a fetch may fail if ex. place added manually
-            incrementPlaceCounter();
-        });
-    }
-
-    private void incrementPlaceCounter() {
-        placeCounter += 1;
-    }
-
-    private void updatePlacesWithRefreshedInfo(List<Place> refreshedPlaces) {
-
-        PlaceModel refreshedPlace;
-        String id;
-        String name;
-        String address;
-        PhotoMetadata photoMetadata;
-
-        int sortPosition;
-
-        // Loop through refreshed Place IDs and find the user's place that
-        // matches this ID. Then update that place with refreshed info.
-        for (int i = 0; i < refreshedPlaces.size(); i++) {
-
-            id = refreshedPlaces.get(i).getId();
-            name = refreshedPlaces.get(i).getName();
-            address = refreshedPlaces.get(i).getAddress();
-
-            if (places != null) {
-                for (PlaceModel originalPlace : places) {
-                    if (originalPlace.getPlaceId().equals(id)) {
-                        // set new place to original place with refreshed
-                        // name and address
-                        refreshedPlace = new PlaceModel(id, name, address);
-
-                        // set sort position of refreshed place
-                        sortPosition = originalPlace.getPosition();
-                        Log.d(TAG, "updatePlacesWithRefreshedInfo: sort position " + sortPosition);
-                        refreshedPlace.setPosition(sortPosition);
-
-                        refreshedPlace.setNotes(originalPlace.getNotes());
-                        refreshedPlace.setVisits(originalPlace.getVisits());
-                        refreshedPlace.setBase64String(originalPlace.getBase64String());
-                        refreshedPlace.setAttributions(originalPlace.getAttributions());
-
-                        // update place in the database with refreshed place info
-                        if (placeViewModel != null) {
-                            placeViewModel.update(refreshedPlace);
-                            // if photo metadata not found, ex. place added manually,
-                            // photo metadata element will be null
-                            List<PhotoMetadata> refreshedPhotoMetadata = refreshedPlaces.get(i).getPhotoMetadatas();
-                            if (refreshedPhotoMetadata != null && !refreshedPhotoMetadata.isEmpty()) {
-                                photoMetadata = refreshedPhotoMetadata.get(0);
-                                fetchPhotoAndUpdatePlaceWhenFinished(placesClient, refreshedPlace, photoMetadata);
-                            }
-                        }
-                    }
-                }
+    private void showRefreshProgress(boolean wasRefreshing) {
+        if (getSupportActionBar() == null) {
+            return;
+        }
+        if (refreshProgress != null && refreshProgress.isRefreshing()) {
+            getSupportActionBar().setSubtitle(getString(R.string.refresh_progress,
+                    refreshProgress.getDone(), refreshProgress.getTotal()));
+        } else {
+            getSupportActionBar().setSubtitle(null);
+            if (wasRefreshing) {
+                Toast.makeText(this, R.string.refresh_finished, Toast.LENGTH_SHORT).show();
             }
-
         }
-
-        Toast.makeText(MainActivity.this, R.string.refresh_finished, Toast.LENGTH_SHORT).show();
     }
 
-
     /** Start a random place's DetailActivity. This may be useful if ex. the user
      * wants to pick a random restaurant. Similar to onItemClick().
      */
     private void pickRandomPlace() {
         // don't pick a random place if there are no places
         if (adapter != null && places != null && !places.isEmpty()) {
-            // pick a random number between 0 and places.size() - 1
-            // this will be the position of the place in the user's list
-            int randPos = new Random().nextInt(places.size());
-            PlaceModel randPlace = adapter.getItem(randPos);
-            // start DetailActivity
-            Intent intent = new Intent(this, DetailActivity.class);
-            intent.putExtra(EXTRA_PLACE_ID, randPlace.getPlaceId());
-            // get the position that was clicked
-            // This will be used to save or delete the place from the DetailActivity buttons
-            clickedPlacePos = randPos;
-
-            Toast.makeText(this, randPlace.getName(), Toast.LENGTH_SHORT).show();
-
-            // get the random place's name, address, and number of visits and
-            // update the widget
-            PlaceTrackerWidgetDisplayService.startActionUpdatePlaceTrackerWidgets(this,
-                    randPlace.getName(), randPlace.getAddress(),
-                    randPlace.getNumVisits());
-
-            startActivityForResult(intent, DETAIL_ACTIVITY_REQUEST_CODE);
+            // the random place may not be in a loaded page, so the database picks it
+            placeViewModel.loadRandomPlace(new PlaceRepository.ResultListener<PlaceSummary>() {
+                @Override
+                public void onResult(PlaceSummary randPlace) {
+                    // randPlace is null if every place was deleted
+                    if (randPlace == null || isFinishing()) {
+                        return;
+                    }
+                    // start DetailActivity
+                    Intent intent = new Intent(MainActivity.this, DetailActivity.class);
+                    intent.putExtra(EXTRA_PLACE_ID, randPlace.getPlaceId());
+                    // get the Place ID that was picked
+                    // This will be used to save or delete the place from the DetailActivity buttons
+                    clickedPlaceId = randPlace.getPlaceId();
+
+                    Toast.makeText(MainActivity.this, randPlace.getName(), Toast.LENGTH_SHORT).show();
+
+                    // get the random place's name, address, and number of visits and
+                    // update the widget
+                    PlaceTrackerWidgetDisplayService.startActionUpdatePlaceTrackerWidgets(MainActivity.this,
+                            randPlace.getName(), randPlace.getAddress(),
+                            randPlace.getVisitCount());
+
+                    startActivityForResult(intent, DETAIL_ACTIVITY_REQUEST_CODE);
+                }
+            });
         } else if (places != null && places.isEmpty()) {
             Toast.makeText(this, R.string.random_pick_empty_error, Toast.LENGTH_LONG).show();
         }
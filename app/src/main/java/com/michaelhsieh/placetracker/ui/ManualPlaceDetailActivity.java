@@ -1,6 +1,7 @@
 package com.michaelhsieh.placetracker.ui;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -17,6 +18,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.michaelhsieh.placetracker.R;
+import com.michaelhsieh.placetracker.database.PlaceRepository;
+import com.michaelhsieh.placetracker.database.PlaceViewModel;
 import com.michaelhsieh.placetracker.models.expandablegroup.VisitGroup;
 import com.michaelhsieh.placetracker.models.PlaceModel;
 import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
@@ -27,21 +30,37 @@ import java.util.List;
 import java.util.UUID;
 
 /** Activity where user can enter info to add a place manually. Very similar to DetailActivity.
- *
+ * <p></p>
+ * The place is saved as a draft while the user enters its info, so only its Place ID
+ * is passed in the saved state and the result sent to MainActivity.
  */
 public class ManualPlaceDetailActivity extends AbstractDetailActivity {
 
     private static final String TAG = ManualPlaceDetailActivity.class.getSimpleName();
 
-    // key to get manually added place when Activity recreated, ex. device rotated
-    private static final String STATE_MANUAL_PLACE = "manual_place";
+    // key to get the Place ID of the manually added place's draft when Activity recreated,
+    // ex. device rotated
+    private static final String STATE_MANUAL_PLACE_ID = "manual_place_id";
 
     // key to check whether user was editing before Activity recreated, ex. when device rotated
     private static final String STATE_IS_EDITABLE = "is_editable";
 
-    // key of place with user's manually entered info when add button clicked
-    // Used to send place to MainActivity
-    public static final String EXTRA_MANUAL_ADDED_PLACE = "place";
+    // key of the Place ID of the place with user's manually entered info when add button clicked
+    // Used to send the place's draft to MainActivity
+    public static final String EXTRA_MANUAL_ADDED_PLACE_ID = "place_id";
+
+    // PlaceViewModel to save the place as a draft while the user enters its info
+    private PlaceViewModel viewModel;
+
+    // Place ID of the draft
+    private String draftId;
+
+    // whether the user clicked the add button, so the draft shouldn't be deleted
+    private boolean isAdded = false;
+
+    private EditText nameDisplay;
+    private EditText addressDisplay;
+    private EditText notesDisplay;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,14 +72,14 @@ public class ManualPlaceDetailActivity extends AbstractDetailActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        final EditText nameDisplay = findViewById(R.id.et_manual_name);
-        final EditText addressDisplay = findViewById(R.id.et_manual_address);
+        nameDisplay = findViewById(R.id.et_manual_name);
+        addressDisplay = findViewById(R.id.et_manual_address);
         // Set Activity to ManualPlaceDetailActivity
         setActivity(this);
         setNumVisitsDisplay(findViewById(R.id.tv_manual_num_visits));
         setLastVisitLabel(findViewById(R.id.tv_label_manual_last_visit));
         setLastVisitDisplay(findViewById(R.id.tv_manual_last_visit));
-        final EditText notesDisplay = findViewById(R.id.et_manual_notes);
+        notesDisplay = findViewById(R.id.et_manual_notes);
 
         // make name and address multi-line EditTexts with done button
         nameDisplay.setHorizontallyScrolling(false);
@@ -97,112 +116,173 @@ public class ManualPlaceDetailActivity extends AbstractDetailActivity {
         // get clickable TextView
         setEditDisplay(findViewById(R.id.tv_manual_edit_visits));
 
+        viewModel = new ViewModelProvider(this).get(PlaceViewModel.class);
+
         // Check whether we're recreating a previously destroyed instance
         if (savedInstanceState != null) {
-            // Restore place from saved state
-            setPlace(savedInstanceState.getParcelable(STATE_MANUAL_PLACE));
+            // Restore the draft from the database.
+            // The name, address, and notes EditTexts restore their own text.
+            draftId = savedInstanceState.getString(STATE_MANUAL_PLACE_ID);
+            viewModel.loadDraft(draftId, new PlaceRepository.ResultListener<PlaceModel>() {
+                @Override
+                public void onResult(PlaceModel draft) {
+                    if (isFinishing()) {
+                        return;
+                    }
+                    if (draft != null) {
+                        showPlace(draft, savedInstanceState);
+                    } else {
+                        Log.e(TAG, "manual place draft " + draftId + " not found");
+                        finish();
+                    }
+                }
+            });
 
         } else {
             // generate a unique String as the place's Place ID
-            String uniqueString = UUID.randomUUID().toString();
+            draftId = UUID.randomUUID().toString();
 
             // Create the manual place with randomly generated String PlaceID,
             // empty name, and empty address.
             // Initialize place here because visit methods will need to use place's getNumVisits,
             // avoid NullPointerException
-            setPlace(new PlaceModel(uniqueString, "", ""));
-
-            // initialize layout with empty texts and 0 visits
-            int numVisits = 0;
-            getNumVisitsDisplay().setText(String.valueOf(numVisits));
+            PlaceModel place = new PlaceModel(draftId, "", "");
+            // save the place as a draft, which is updated as the user edits it
+            viewModel.insertDraft(place);
+            showPlace(place, null);
         }
+    }
 
-        if (getPlace() != null) {
-
-            // initialize visits to place's list of visits
-            setVisits(getPlace().getVisits());
-
-            // initialize list of visit groups which will only contain one group at position 0
-            List<VisitGroup> visitGroupList =
-                    Arrays.asList
-                            (new VisitGroup(getResources().getString(R.string.dates_visited),
-                                    getVisits())
-                            );
-
-            // show last visit if PlaceModel already has visits,
-            // otherwise hide last visit text and label
-            showOrHideLastVisit();
-
-            // initialize expanding RecyclerView
-            RecyclerView recyclerView = findViewById(R.id.expanding_rv_manual_visits);
-            LinearLayoutManager layoutManager = new LinearLayoutManager(this);
-            recyclerView.setLayoutManager(layoutManager);
-            // add a divider
-            DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(recyclerView.getContext(),
-                    layoutManager.getOrientation());
-            // use custom white divider
-            dividerItemDecoration.setDrawable(getResources().getDrawable(R.drawable.place_divider));
-            recyclerView.addItemDecoration(dividerItemDecoration);
-
-            // Instantiate the adapter with the list of visit groups and
-            // ManualPlaceDetailActivity as drag listener.
-            // There's only one visit group.
-            setAdapter(new VisitGroupAdapter(visitGroupList, this));
-            // set the click listener for clicks on individual visits
-            getAdapter().setClickListener(this);
-            recyclerView.setAdapter(getAdapter());
-
-            // set up ItemTouchHelper to swipe left to delete visit or drag and drop visits
-            setUpItemTouchHelper(recyclerView);
+    /** Display the manually entered place and its visits.
+     *
+     * @param place The draft of the place being added
+     * @param savedInstanceState The saved state if the Activity was recreated, otherwise null
+     */
+    private void showPlace(PlaceModel place, Bundle savedInstanceState) {
+        setPlace(place);
+
+        // initialize visits to place's list of visits
+        setVisits(getPlace().getVisits());
+        getNumVisitsDisplay().setText(String.valueOf(getPlace().getNumVisits()));
+
+        // initialize list of visit groups which will only contain one group at position 0
+        List<VisitGroup> visitGroupList =
+                Arrays.asList
+                        (new VisitGroup(getResources().getString(R.string.dates_visited),
+                                getVisits())
+                        );
+
+        // show last visit if PlaceModel already has visits,
+        // otherwise hide last visit text and label
+        showOrHideLastVisit();
+
+        // initialize expanding RecyclerView
+        RecyclerView recyclerView = findViewById(R.id.expanding_rv_manual_visits);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        // add a divider
+        DividerItemDecoration dividerItemDecoration = new DividerItemDecoration(recyclerView.getContext(),
+                layoutManager.getOrientation());
+        // use custom white divider
+        dividerItemDecoration.setDrawable(getResources().getDrawable(R.drawable.place_divider));
+        recyclerView.addItemDecoration(dividerItemDecoration);
+
+        // Instantiate the adapter with the list of visit groups and
+        // ManualPlaceDetailActivity as drag listener.
+        // There's only one visit group.
+        setAdapter(new VisitGroupAdapter(visitGroupList, this));
+        // set the click listener for clicks on individual visits
+        getAdapter().setClickListener(this);
+        recyclerView.setAdapter(getAdapter());
+
+        // set up ItemTouchHelper to swipe left to delete visit or drag and drop visits
+        setUpItemTouchHelper(recyclerView);
+
+        if (savedInstanceState != null) {
+            // if ex. device rotated, restore expand or collapse state of adapter
+            getAdapter().onRestoreInstanceState(savedInstanceState);
 
             // if user was editing before ex. device rotation, click edit button to
             // set isEditable to true and display drag handles
-            if (savedInstanceState != null) {
-                // when Activity is recreated, isEditable is false
-                if (savedInstanceState.getBoolean(STATE_IS_EDITABLE)) {
-                    allowEditing();
-                }
+            // when Activity is recreated, isEditable is false
+            if (savedInstanceState.getBoolean(STATE_IS_EDITABLE)) {
+                allowEditing();
             }
+        }
 
-            // add visit when the add visit button is clicked
-            Button addVisitButton = findViewById(R.id.btn_manual_add_visit);
-            addVisitButton.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    // object whose calendar fields have been initialized with the current date and time
-                    Calendar rightNow = Calendar.getInstance();
-                    insertSingleItem(new Visit(rightNow));
+        // add visit when the add visit button is clicked
+        Button addVisitButton = findViewById(R.id.btn_manual_add_visit);
+        addVisitButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                // object whose calendar fields have been initialized with the current date and time
+                Calendar rightNow = Calendar.getInstance();
+                insertSingleItem(new Visit(rightNow));
+            }
+        });
+
+        Button addManualPlaceButton = findViewById(R.id.btn_manual_add_place);
+        addManualPlaceButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                Intent addManualPlaceIntent = new Intent();
+
+                // show Toast and don't save place if user didn't enter a valid name
+                if (nameDisplay.getText().toString().isEmpty()) {
+                    Toast.makeText(ManualPlaceDetailActivity.this, R.string.empty_place_name_error, Toast.LENGTH_LONG).show();
+                } else {
+                    // Save the user's current EditText data for name, address, and notes.
+                    // Visits should already be saved.
+                    saveDraft();
+                    isAdded = true;
+                    // only send the Place ID, so the result is the same size however many visits there are
+                    addManualPlaceIntent.putExtra(EXTRA_MANUAL_ADDED_PLACE_ID, draftId);
+                    setResult(RESULT_OK, addManualPlaceIntent);
+                    finish();
                 }
-            });
+            }
+        });
+    }
 
-            Button addManualPlaceButton = findViewById(R.id.btn_manual_add_place);
-            addManualPlaceButton.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View view) {
-                    Intent addManualPlaceIntent = new Intent();
+    /** Save the visits to the draft as soon as they change.
+     *
+     */
+    @Override
+    protected void onVisitsChanged() {
+        viewModel.saveDraft(getPlace());
+    }
 
-                    // show Toast and don't save place if user didn't enter a valid name
-                    if (nameDisplay.getText().toString().isEmpty()) {
-                        Toast.makeText(ManualPlaceDetailActivity.this, R.string.empty_place_name_error, Toast.LENGTH_LONG).show();
-                    } else {
-                        // Save the user's current EditText data for name, address, and notes.
-                        // Visits should already be added.
-                        // This should not crash with TransactionTooLargeException unless user adds 150+ visits.
-                        getPlace().setName(nameDisplay.getText().toString());
-                        getPlace().setAddress(addressDisplay.getText().toString());
-                        getPlace().setNotes(notesDisplay.getText().toString());
-                        addManualPlaceIntent.putExtra(EXTRA_MANUAL_ADDED_PLACE, getPlace());
-                        setResult(RESULT_OK, addManualPlaceIntent);
-                        finish();
-                    }
-                }
-            });
+    /** Save the draft when the user leaves, ex. to another app,
+     * so it can be restored if the app's process is stopped.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // a draft the user backed out of is deleted instead
+        if (getPlace() != null && !isFinishing()) {
+            saveDraft();
+        }
+    }
 
-        } else {
-            Log.e(TAG, "manual place is null");
+    /** Delete the draft if the user leaves without adding the place.
+     *
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing() && !isAdded && draftId != null) {
+            viewModel.deleteDraft(draftId);
         }
     }
 
+    // save the user's current name, address, notes, and visits to the draft
+    private void saveDraft() {
+        getPlace().setName(nameDisplay.getText().toString());
+        getPlace().setAddress(addressDisplay.getText().toString());
+        getPlace().setNotes(notesDisplay.getText().toString());
+        viewModel.saveDraft(getPlace());
+    }
+
     /** Save the state of the adapter and the manually entered place on configuration change,
      * ex. device rotation
      *
@@ -224,16 +304,8 @@ public class ManualPlaceDetailActivity extends AbstractDetailActivity {
         // save whether the user was editing visits or not
         outState.putBoolean(STATE_IS_EDITABLE, isEditable());
 
-        // save the place that the user is manually adding
-        // This should not crash with TransactionTooLargeException unless user adds 150+ visits
-        outState.putParcelable(STATE_MANUAL_PLACE, getPlace());
-    }
-
-    @Override
-    protected void onRestoreInstanceState(@NonNull Bundle savedInstanceState) {
-        super.onRestoreInstanceState(savedInstanceState);
-        if (getAdapter() != null) {
-            getAdapter().onRestoreInstanceState(savedInstanceState);
-        }
+        // save the Place ID of the draft the user is manually adding.
+        // The draft itself is in the database.
+        outState.putString(STATE_MANUAL_PLACE_ID, draftId);
     }
 }
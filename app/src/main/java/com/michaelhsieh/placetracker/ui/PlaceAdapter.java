@@ -1,6 +1,7 @@
 package com.michaelhsieh.placetracker.ui;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -9,14 +10,30 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.michaelhsieh.placetracker.R;
-import com.michaelhsieh.placetracker.models.PlaceModel;
+import com.michaelhsieh.placetracker.models.PlaceSummary;
+import com.michaelhsieh.placetracker.photo.PhotoLoader;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.AsyncPagedListDiffer;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 /** Adapter to populate Views in each row of RecyclerView with data.
+ * <p></p>
+ * The places are a PagedList, so only the pages of places near the rows on screen are loaded.
+ * A place that hasn't been loaded yet is null and its row is shown empty.
+ * <p></p>
+ * Each row shows its place's thumbnail, which is decoded in the background when the row is bound.
+ * RecyclerView binds the next rows ahead of scrolling, so their thumbnails start decoding
+ * before they're on screen. A row's decode is canceled when the row is recycled.
  * <p></p>
  * Source:
  * Suragch
@@ -25,21 +42,81 @@ import androidx.recyclerview.widget.RecyclerView;
  */
 public class PlaceAdapter extends RecyclerView.Adapter<PlaceAdapter.ViewHolder> {
 
-    // if not initialized, place is null before first LiveData update
-    private List<PlaceModel> places;
+    // payload when a place's name or address changed, so only the row's text is bound again
+    private static final Object PAYLOAD_TEXT = new Object();
+    // payload when the drag handles are shown or hidden
+    private static final Object PAYLOAD_DRAG_HANDLE = new Object();
+    // payload when a place's thumbnail changed
+    private static final Object PAYLOAD_THUMBNAIL = new Object();
+
+    // Places are the same place if they have the same Place ID.
+    // A row only changes if its name, address, or thumbnail changed. Rows aren't bound again when
+    // ex. a visit is saved, since they don't display visits.
+    private static final DiffUtil.ItemCallback<PlaceSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<PlaceSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull PlaceSummary oldPlace, @NonNull PlaceSummary newPlace) {
+                    return oldPlace.getPlaceId().equals(newPlace.getPlaceId());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull PlaceSummary oldPlace, @NonNull PlaceSummary newPlace) {
+                    // a changed position is a move, not a change to the row
+                    return isTextEqual(oldPlace, newPlace)
+                            && isEqual(oldPlace.getThumbnailPath(), newPlace.getThumbnailPath());
+                }
+
+                @Nullable
+                @Override
+                public Object getChangePayload(@NonNull PlaceSummary oldPlace, @NonNull PlaceSummary newPlace) {
+                    if (isTextEqual(oldPlace, newPlace)) {
+                        return PAYLOAD_THUMBNAIL;
+                    } else if (isEqual(oldPlace.getThumbnailPath(), newPlace.getThumbnailPath())) {
+                        return PAYLOAD_TEXT;
+                    }
+                    // bind the whole row
+                    return null;
+                }
+            };
+
+    // holds the PagedList, loads pages as rows are bound,
+    // and finds the changes between an old and new PagedList on a background thread
+    private AsyncPagedListDiffer<PlaceSummary> differ;
     private LayoutInflater inflater;
     private ItemClickListener clickListener;
 
+    // decodes thumbnails in the background
+    private PhotoLoader photoLoader;
+    // width and height of the thumbnails, in pixels
+    private int thumbnailSize;
+
     // listener used when user touches drag handle
     private StartDragListener startDragListener;
     // track whether drag handles should be visible or not
     private boolean isHandleVisible = false;
 
+    // Places the user dragged past, in their new order.
+    // The PagedList can't be rearranged, so these are shown in the rows from movedRangeStart
+    // until a PagedList with the places' saved positions is submitted.
+    // Null when no places have been moved.
+    private List<PlaceSummary> movedPlaces;
+    private int movedRangeStart;
+    // the place being dragged and the row it was dragged from
+    private PlaceSummary draggedPlace;
+    private int draggedFromPosition;
+    // number of rows when the user started moving places
+    private int itemCountBeforeMove;
+    // whether the moved places' positions are being saved
+    private boolean isSavingMovedPlaces = false;
+
     // data is passed into the constructor
-    public PlaceAdapter(Context context, List<PlaceModel> places, StartDragListener startDragListener) {
+    public PlaceAdapter(Context context, StartDragListener startDragListener) {
         this.inflater = LayoutInflater.from(context);
-        this.places = places;
         this.startDragListener = startDragListener;
+        this.photoLoader = PhotoLoader.getInstance(context);
+        this.thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_size);
+        this.differ = new AsyncPagedListDiffer<>(new PlaceListUpdateCallback(),
+                new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
     }
 
     // inflates the row layout from XML when needed
@@ -53,49 +130,231 @@ public class PlaceAdapter extends RecyclerView.Adapter<PlaceAdapter.ViewHolder>
     // binds the data to the TextView in each row
     @Override
     public void onBindViewHolder(@NonNull PlaceAdapter.ViewHolder holder, int position) {
-        PlaceModel place = places.get(position);
-        holder.nameDisplay.setText(place.getName());
-        holder.addressDisplay.setText(place.getAddress());
+        bindText(holder, position);
+        bindThumbnail(holder, position);
+        bindDragHandle(holder);
+    }
+
+    // binds only the parts of the row in the payloads, if the row was bound before
+    @Override
+    public void onBindViewHolder(@NonNull PlaceAdapter.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_TEXT) {
+                bindText(holder, position);
+            } else if (payload == PAYLOAD_DRAG_HANDLE) {
+                bindDragHandle(holder);
+            } else if (payload == PAYLOAD_THUMBNAIL) {
+                bindThumbnail(holder, position);
+            } else {
+                // unknown change, so bind the whole row
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+    }
+
+    private void bindText(@NonNull PlaceAdapter.ViewHolder holder, int position) {
+        PlaceSummary place = getItem(position);
+        if (place != null) {
+            holder.nameDisplay.setText(place.getName());
+            holder.addressDisplay.setText(place.getAddress());
+        } else {
+            // place is still loading
+            holder.nameDisplay.setText(null);
+            holder.addressDisplay.setText(null);
+        }
+    }
+
+    private void bindThumbnail(@NonNull final PlaceAdapter.ViewHolder holder, int position) {
+        PlaceSummary place = getItem(position);
+        String thumbnailPath = place == null ? null : place.getThumbnailPath();
+        if (thumbnailPath != null && thumbnailPath.equals(holder.thumbnailPath)) {
+            // this thumbnail is already shown or being decoded
+            return;
+        }
+        holder.cancelThumbnail();
+        holder.thumbnailPath = thumbnailPath;
+        if (thumbnailPath == null) {
+            // place has no photo or is still loading
+            holder.thumbnail.setVisibility(View.GONE);
+            return;
+        }
+
+        // keep the row's layout the same while the thumbnail is decoded
+        holder.thumbnail.setImageDrawable(null);
+        holder.thumbnail.setVisibility(View.VISIBLE);
+        holder.thumbnailRequest = photoLoader.load(place.getPlaceId(), place.getPhotoHash(),
+                thumbnailPath, null, thumbnailSize, thumbnailSize, new PhotoLoader.Callback() {
+                    @Override
+                    public void onPhotoLoaded(Bitmap bitmap) {
+                        holder.thumbnailRequest = null;
+                        if (bitmap != null) {
+                            holder.thumbnail.setImageBitmap(bitmap);
+                        } else {
+                            holder.thumbnail.setVisibility(View.GONE);
+                        }
+                    }
+                });
+    }
+
+    // stop decoding the thumbnail of a row scrolled off screen
+    @Override
+    public void onViewRecycled(@NonNull PlaceAdapter.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelThumbnail();
+        holder.thumbnailPath = null;
+        holder.thumbnail.setImageDrawable(null);
+    }
 
+    private void bindDragHandle(@NonNull PlaceAdapter.ViewHolder holder) {
         // set drag handle visibility
         if (isHandleVisible) {
             holder.dragHandle.setVisibility(View.VISIBLE);
         } else {
             holder.dragHandle.setVisibility(View.GONE);
         }
+    }
+
+    // total number of rows, including places that haven't been loaded
+    @Override
+    public int getItemCount() {
+        return differ.getItemCount();
+    }
 
-        // start drag when handle clicked
-        holder.dragHandle.setOnTouchListener(new View.OnTouchListener() {
+    /** Set the adapter data to a PagedList of PlaceSummaries.
+     * The changes are found on a background thread, then only the
+     * places that were inserted, removed, moved, or changed are updated.
+     *
+     * @param newPlaces the PagedList of place summaries observed
+     * by LiveData
+     */
+    public void submitList(PagedList<PlaceSummary> newPlaces) {
+        differ.submitList(newPlaces, new Runnable() {
             @Override
-            public boolean onTouch(View view, MotionEvent motionEvent) {
-                if (motionEvent.getAction() == MotionEvent.ACTION_DOWN) {
-                    startDragListener.requestDrag(holder);
+            public void run() {
+                if (isSavingMovedPlaces) {
+                    // the new places are in the order the user moved them to,
+                    // so show the PagedList again
+                    showPagedList();
                 }
-                return false;
             }
         });
     }
 
-    // total number of rows
-    @Override
-    public int getItemCount() {
-        // when getItemCount() is first called, places has not been updated.
-        // Initially, places is null, and we can't return null.
-        if (places == null) {
-            return 0;
+    // stop showing the moved places in place of the PagedList
+    private void showPagedList() {
+        isSavingMovedPlaces = false;
+        movedPlaces = null;
+        draggedPlace = null;
+        // changes to the PagedList weren't dispatched while the moved places were shown.
+        // The rows are already in the saved order, but any of their text or thumbnails
+        // may have changed, so the whole rows are bound again.
+        if (getItemCount() == itemCountBeforeMove) {
+            notifyItemRangeChanged(0, getItemCount());
         } else {
-            return places.size();
+            // a place was inserted or deleted while the user was dragging
+            notifyDataSetChanged();
         }
     }
 
-    /** Set the adapter data to a list of PlaceModels
+    /** Move a place from one row to another while the user drags it.
      *
-     * @param newPlaces the list of places observed
-     * by LiveData
+     * @param fromPosition The starting position of the place
+     * @param toPosition The ending position of the place
+     * @return True if moved, false if a place in between hasn't been loaded
      */
-    public void setPlaces(List<PlaceModel> newPlaces){
-        places = newPlaces;
-        notifyDataSetChanged();
+    boolean moveItem(int fromPosition, int toPosition) {
+        if (isSavingMovedPlaces) {
+            return false;
+        }
+        int start = Math.min(fromPosition, toPosition);
+        int end = Math.max(fromPosition, toPosition);
+
+        if (movedPlaces == null) {
+            List<PlaceSummary> range = getLoadedPlaces(start, end + 1);
+            if (range == null) {
+                return false;
+            }
+            movedPlaces = range;
+            movedRangeStart = start;
+            draggedPlace = range.get(fromPosition - start);
+            draggedFromPosition = fromPosition;
+            itemCountBeforeMove = getItemCount();
+        } else {
+            // extend the moved places to include both rows
+            int movedRangeEnd = movedRangeStart + movedPlaces.size();
+            List<PlaceSummary> before = getLoadedPlaces(start, movedRangeStart);
+            List<PlaceSummary> after = getLoadedPlaces(movedRangeEnd, end + 1);
+            if (before == null || after == null) {
+                return false;
+            }
+            movedPlaces.addAll(0, before);
+            movedPlaces.addAll(after);
+            movedRangeStart -= before.size();
+        }
+
+        PlaceSummary place = movedPlaces.remove(fromPosition - movedRangeStart);
+        movedPlaces.add(toPosition - movedRangeStart, place);
+        notifyItemMoved(fromPosition, toPosition);
+        return true;
+    }
+
+    /** Get where the place the user dragged was dropped.
+     * The moved places are shown until a PagedList with the new position is submitted.
+     *
+     * @return The dragged place and the places it was dropped between,
+     * or null if no place was moved
+     */
+    @Nullable
+    Move finishMoving() {
+        if (movedPlaces == null || isSavingMovedPlaces) {
+            return null;
+        }
+        int droppedIndex = movedPlaces.indexOf(draggedPlace);
+        int droppedPosition = movedRangeStart + droppedIndex;
+        if (droppedPosition == draggedFromPosition) {
+            // dropped where the drag started
+            showPagedList();
+            return null;
+        }
+
+        // only the dragged place changed order, so only it needs a new sort position
+        PlaceSummary previousPlace = droppedPosition > 0 ? getItem(droppedPosition - 1) : null;
+        PlaceSummary nextPlace = droppedPosition < getItemCount() - 1 ? getItem(droppedPosition + 1) : null;
+        if ((droppedPosition > 0 && previousPlace == null)
+                || (droppedPosition < getItemCount() - 1 && nextPlace == null)) {
+            // a neighbor was dropped from memory, so the move can't be saved
+            showPagedList();
+            return null;
+        }
+        isSavingMovedPlaces = true;
+        return new Move(draggedPlace.getPlaceId(),
+                previousPlace == null ? null : previousPlace.getPlaceId(),
+                nextPlace == null ? null : nextPlace.getPlaceId());
+    }
+
+    /** Get the loaded places between two positions of the PagedList.
+     *
+     * @param start The first position, inclusive
+     * @param end The last position, exclusive
+     * @return The places, or null if any of them haven't been loaded
+     */
+    @Nullable
+    private List<PlaceSummary> getLoadedPlaces(int start, int end) {
+        List<PlaceSummary> loadedPlaces = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            PlaceSummary place = differ.getItem(i);
+            if (place == null) {
+                return null;
+            }
+            loadedPlaces.add(place);
+        }
+        return loadedPlaces;
     }
 
 
@@ -104,14 +363,32 @@ public class PlaceAdapter extends RecyclerView.Adapter<PlaceAdapter.ViewHolder>
 
         TextView nameDisplay;
         TextView addressDisplay;
+        ImageView thumbnail;
         ImageView dragHandle;
 
+        // the thumbnail shown or being decoded, or null if none is
+        String thumbnailPath;
+        // the thumbnail being decoded, or null if none is
+        PhotoLoader.Request thumbnailRequest;
+
         public ViewHolder(View itemView) {
             super(itemView);
             nameDisplay = itemView.findViewById(R.id.tv_name);
             addressDisplay = itemView.findViewById(R.id.tv_address);
+            thumbnail = itemView.findViewById(R.id.iv_thumbnail);
             dragHandle = itemView.findViewById(R.id.iv_drag_handle);
             itemView.setOnClickListener(this);
+
+            // start drag when handle clicked
+            dragHandle.setOnTouchListener(new View.OnTouchListener() {
+                @Override
+                public boolean onTouch(View view, MotionEvent motionEvent) {
+                    if (motionEvent.getAction() == MotionEvent.ACTION_DOWN) {
+                        startDragListener.requestDrag(ViewHolder.this);
+                    }
+                    return false;
+                }
+            });
         }
 
         @Override
@@ -120,11 +397,91 @@ public class PlaceAdapter extends RecyclerView.Adapter<PlaceAdapter.ViewHolder>
                 clickListener.onItemClick(view, getAdapterPosition());
             }
         }
+
+        void cancelThumbnail() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+                thumbnailRequest = null;
+            }
+        }
     }
 
-    // convenience method for getting data at click position
-    PlaceModel getItem(int id) {
-        return places.get(id);
+    /** A place dropped between two other places by drag and drop.
+     *
+     */
+    static class Move {
+        private final String placeId;
+        private final String previousPlaceId;
+        private final String nextPlaceId;
+
+        Move(String placeId, String previousPlaceId, String nextPlaceId) {
+            this.placeId = placeId;
+            this.previousPlaceId = previousPlaceId;
+            this.nextPlaceId = nextPlaceId;
+        }
+
+        String getPlaceId() {
+            return placeId;
+        }
+
+        // null if the place was dropped first in the list
+        String getPreviousPlaceId() {
+            return previousPlaceId;
+        }
+
+        // null if the place was dropped last in the list
+        String getNextPlaceId() {
+            return nextPlaceId;
+        }
+    }
+
+    /** Dispatches the changes between PagedLists to the adapter,
+     * except while moved places are shown in place of the PagedList.
+     */
+    private class PlaceListUpdateCallback implements ListUpdateCallback {
+
+        private final AdapterListUpdateCallback adapterCallback =
+                new AdapterListUpdateCallback(PlaceAdapter.this);
+
+        @Override
+        public void onInserted(int position, int count) {
+            if (movedPlaces == null) {
+                adapterCallback.onInserted(position, count);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (movedPlaces == null) {
+                adapterCallback.onRemoved(position, count);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (movedPlaces == null) {
+                adapterCallback.onMoved(fromPosition, toPosition);
+            }
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            if (movedPlaces == null) {
+                adapterCallback.onChanged(position, count, payload);
+            }
+        }
+    }
+
+    // convenience method for getting data at click position.
+    // Null if the place hasn't been loaded yet.
+    @Nullable
+    PlaceSummary getItem(int id) {
+        // getting the place from the PagedList also loads the pages around it
+        PlaceSummary place = differ.getItem(id);
+        if (movedPlaces != null && id >= movedRangeStart && id < movedRangeStart + movedPlaces.size()) {
+            return movedPlaces.get(id - movedRangeStart);
+        }
+        return place;
     }
 
     // allows click events to be caught
@@ -137,7 +494,24 @@ public class PlaceAdapter extends RecyclerView.Adapter<PlaceAdapter.ViewHolder>
         void onItemClick(View view, int position);
     }
 
+    /** Show or hide the drag handles.
+     * Only the handles of the rows are bound again.
+     *
+     * @param isHandleVisible Whether the drag handles should be visible
+     */
     void setHandleVisible(boolean isHandleVisible) {
-        this.isHandleVisible = isHandleVisible;
+        if (this.isHandleVisible != isHandleVisible) {
+            this.isHandleVisible = isHandleVisible;
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_DRAG_HANDLE);
+        }
+    }
+
+    private static boolean isTextEqual(PlaceSummary oldPlace, PlaceSummary newPlace) {
+        return isEqual(oldPlace.getName(), newPlace.getName())
+                && isEqual(oldPlace.getAddress(), newPlace.getAddress());
+    }
+
+    private static boolean isEqual(String a, String b) {
+        return a == null ? b == null : a.equals(b);
     }
 }
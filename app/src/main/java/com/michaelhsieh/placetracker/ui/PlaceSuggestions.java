@@ -0,0 +1,204 @@
+package com.michaelhsieh.placetracker.ui;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.michaelhsieh.placetracker.R;
+import com.michaelhsieh.placetracker.database.PlaceNameIndex;
+import com.michaelhsieh.placetracker.models.PlaceName;
+import com.michaelhsieh.placetracker.places.PlacesGateway;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.appcompat.widget.SearchView;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
+
+/** Suggests places under the search bar as the user types.
+ * <p></p>
+ * Saved places are suggested first. They're found in an in-memory index of place names,
+ * so they appear as soon as a letter is typed. New places predicted by the Places API
+ * are added below them once they arrive. If the text is exactly the name of a saved place,
+ * the Places API isn't called at all, which saves time and API quota.
+ * Predictions are only requested once the user pauses typing, not on every keystroke.
+ */
+final class PlaceSuggestions {
+
+    private static final String TAG = PlaceSuggestions.class.getSimpleName();
+
+    // most saved places suggested at once
+    private static final int MAX_SAVED_SUGGESTIONS = 5;
+
+    // shorter text is only matched against saved places,
+    // since predictions for one or two letters are rarely the place the user wants
+    private static final int MIN_PREDICTION_QUERY_LENGTH = 3;
+
+    // how long the text must stay the same before predictions are requested
+    private static final long PREDICTION_DELAY_MILLIS = 300;
+
+    // columns of each suggestion
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_DETAIL = "detail";
+    private static final String COLUMN_PLACE_ID = "place_id";
+    private static final String COLUMN_IS_SAVED = "is_saved";
+    private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_NAME, COLUMN_DETAIL,
+            COLUMN_PLACE_ID, COLUMN_IS_SAVED};
+
+    /** Called when the user clicks a suggestion.
+     *
+     */
+    interface SuggestionClickListener {
+        void onSavedPlaceClicked(String placeId);
+
+        // the session token must be used to fetch the place, which ends the autocomplete session
+        void onNewPlaceClicked(String placeId, AutocompleteSessionToken sessionToken);
+    }
+
+    private final Context context;
+    private final PlacesGateway placesGateway;
+    private final SuggestionClickListener clickListener;
+    private final SimpleCursorAdapter adapter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // requests predictions for the latest text, or null if none is waiting
+    private Runnable pendingPredictionRequest;
+
+    // Groups the predictions requested while the user types one search, so the Places API
+    // bills them as one session. A new session starts after a new place is clicked.
+    private AutocompleteSessionToken sessionToken;
+
+    // the latest text, to ignore predictions for text the user has already changed
+    private String currentText;
+
+    PlaceSuggestions(Context context, PlacesGateway placesGateway, SuggestionClickListener clickListener) {
+        this.context = context;
+        this.placesGateway = placesGateway;
+        this.clickListener = clickListener;
+        adapter = new SimpleCursorAdapter(context, android.R.layout.simple_list_item_2, null,
+                new String[] {COLUMN_NAME, COLUMN_DETAIL},
+                new int[] {android.R.id.text1, android.R.id.text2}, 0);
+    }
+
+    /** Show suggestions under a search bar.
+     *
+     * @param searchView The search bar
+     */
+    void attach(SearchView searchView) {
+        searchView.setSuggestionsAdapter(adapter);
+        searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            @Override
+            public boolean onSuggestionSelect(int position) {
+                return false;
+            }
+
+            @Override
+            public boolean onSuggestionClick(int position) {
+                Cursor suggestion = (Cursor) adapter.getItem(position);
+                String placeId = suggestion.getString(suggestion.getColumnIndexOrThrow(COLUMN_PLACE_ID));
+                if (suggestion.getInt(suggestion.getColumnIndexOrThrow(COLUMN_IS_SAVED)) != 0) {
+                    clickListener.onSavedPlaceClicked(placeId);
+                } else {
+                    clickListener.onNewPlaceClicked(placeId, sessionToken);
+                    sessionToken = null;
+                }
+                // don't replace the search text with the suggestion
+                return true;
+            }
+        });
+    }
+
+    /** Suggest places for the text the user typed.
+     *
+     * @param text The text in the search bar
+     * @param savedPlaceNames The names of the saved places
+     */
+    void update(final String text, final PlaceNameIndex savedPlaceNames) {
+        currentText = text;
+        final List<PlaceName> savedPlaces = savedPlaceNames.findByPrefix(text, MAX_SAVED_SUGGESTIONS);
+        // show saved places right away
+        show(savedPlaces, Collections.<AutocompletePrediction>emptyList());
+        cancelPredictionRequest();
+
+        // don't call the Places API for the name of a place the user already saved
+        if (text.trim().length() < MIN_PREDICTION_QUERY_LENGTH || savedPlaceNames.containsName(text)) {
+            return;
+        }
+
+        pendingPredictionRequest = () -> {
+            pendingPredictionRequest = null;
+            requestPredictions(text, savedPlaces, savedPlaceNames);
+        };
+        mainHandler.postDelayed(pendingPredictionRequest, PREDICTION_DELAY_MILLIS);
+    }
+
+    // suggest the places predicted by the Places API below the saved places
+    private void requestPredictions(final String text, final List<PlaceName> savedPlaces,
+                                    final PlaceNameIndex savedPlaceNames) {
+        if (sessionToken == null) {
+            sessionToken = AutocompleteSessionToken.newInstance();
+        }
+        placesGateway.findAutocompletePredictions(text, sessionToken,
+                new PlacesGateway.Callback<List<AutocompletePrediction>>() {
+                    @Override
+                    public void onSuccess(List<AutocompletePrediction> predictions) {
+                        if (!text.equals(currentText)) {
+                            // the user kept typing, so newer suggestions are already shown or on the way
+                            return;
+                        }
+                        // saved places are already suggested above the predictions
+                        List<AutocompletePrediction> newPlaces = new ArrayList<>();
+                        for (AutocompletePrediction prediction : predictions) {
+                            if (!savedPlaceNames.containsPlace(prediction.getPlaceId())) {
+                                newPlaces.add(prediction);
+                            }
+                        }
+                        show(savedPlaces, newPlaces);
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        // saved places are still suggested
+                        Log.e(TAG, "Couldn't get place predictions: " + exception.getMessage());
+                    }
+                });
+    }
+
+    // remove all suggestions and start a new session next time
+    void clear() {
+        cancelPredictionRequest();
+        currentText = null;
+        sessionToken = null;
+        adapter.changeCursor(null);
+    }
+
+    private void cancelPredictionRequest() {
+        if (pendingPredictionRequest != null) {
+            mainHandler.removeCallbacks(pendingPredictionRequest);
+            pendingPredictionRequest = null;
+        }
+    }
+
+    private void show(List<PlaceName> savedPlaces, List<AutocompletePrediction> newPlaces) {
+        MatrixCursor suggestions = new MatrixCursor(COLUMNS, savedPlaces.size() + newPlaces.size());
+        long id = 0;
+        String savedPlaceDetail = context.getString(R.string.saved_place_suggestion);
+        for (PlaceName place : savedPlaces) {
+            suggestions.addRow(new Object[] {id++, place.getName(), savedPlaceDetail,
+                    place.getPlaceId(), 1});
+        }
+        for (AutocompletePrediction prediction : newPlaces) {
+            suggestions.addRow(new Object[] {id++, prediction.getPrimaryText(null).toString(),
+                    prediction.getSecondaryText(null).toString(), prediction.getPlaceId(), 0});
+        }
+        // closes the previous suggestions
+        adapter.changeCursor(suggestions);
+    }
+}
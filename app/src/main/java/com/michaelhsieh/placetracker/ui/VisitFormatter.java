@@ -0,0 +1,80 @@
+package com.michaelhsieh.placetracker.ui;
+
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/** Formats the date and time of Visits when they're displayed.
+ * <p></p>
+ * DateFormats are slow to create, so one date format and one time format are kept
+ * for each locale. A new locale, ex. after the user changes the device language,
+ * gets its own formats. DateFormats aren't thread-safe, so only use this on the main thread.
+ * <p></p>
+ * Source:
+ *
+ * Dany Pop
+ * https://stackoverflow.com/questions/454315/how-to-format-date-and-time-in-android
+ */
+final class VisitFormatter {
+
+    private static final Map<Locale, DateFormat> dateFormats = new HashMap<>();
+    private static final Map<Locale, DateFormat> timeFormats = new HashMap<>();
+
+    // time zones by ID, since visits usually share a few time zones
+    private static final Map<String, TimeZone> timeZones = new HashMap<>();
+
+    private VisitFormatter() {
+    }
+
+    /** Get the day of week, month, day, and year of a Visit, ex. Saturday, July 4, 2020.
+     *
+     * @param visit The Visit to format
+     * @return The date in the Visit's time zone
+     */
+    static String formatDate(Visit visit) {
+        Locale locale = Locale.getDefault();
+        DateFormat dateFormat = dateFormats.get(locale);
+        if (dateFormat == null) {
+            dateFormat = DateFormat.getDateInstance(DateFormat.FULL, locale);
+            dateFormats.put(locale, dateFormat);
+        }
+        return format(dateFormat, visit);
+    }
+
+    /** Get the hours, minutes, and AM/PM of a Visit, ex. 6:35 PM.
+     *
+     * @param visit The Visit to format
+     * @return The time in the Visit's time zone
+     */
+    static String formatTime(Visit visit) {
+        Locale locale = Locale.getDefault();
+        DateFormat timeFormat = timeFormats.get(locale);
+        if (timeFormat == null) {
+            timeFormat = DateFormat.getTimeInstance(DateFormat.SHORT, locale);
+            timeFormats.put(locale, timeFormat);
+        }
+        return format(timeFormat, visit);
+    }
+
+    private static String format(DateFormat format, Visit visit) {
+        format.setTimeZone(getTimeZone(visit.getTimeZone()));
+        return format.format(new Date(visit.getVisitedAt()));
+    }
+
+    private static TimeZone getTimeZone(String id) {
+        if (id == null) {
+            return TimeZone.getDefault();
+        }
+        TimeZone zone = timeZones.get(id);
+        if (zone == null) {
+            zone = TimeZone.getTimeZone(id);
+            timeZones.put(id, zone);
+        }
+        return zone;
+    }
+}
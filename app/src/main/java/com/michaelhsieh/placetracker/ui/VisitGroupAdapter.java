@@ -51,8 +51,9 @@ public class VisitGroupAdapter extends ExpandableRecyclerViewAdapter<VisitGroupA
     @Override
     public void onBindChildViewHolder(VisitViewHolder holder, int flatPosition, ExpandableGroup group, int childIndex) {
         final Visit visit = ((VisitGroup) group).getItems().get(childIndex);
-        holder.setVisitDate(visit.getDate());
-        holder.setVisitTime(visit.getTime());
+        // format the date and time in the current locale
+        holder.setVisitDate(VisitFormatter.formatDate(visit));
+        holder.setVisitTime(VisitFormatter.formatTime(visit));
 
         // set drag handle visibility
         if (isHandleVisible) {
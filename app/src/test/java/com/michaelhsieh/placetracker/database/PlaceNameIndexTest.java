@@ -0,0 +1,66 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.PlaceName;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that PlaceNameIndex finds saved places by the start of any word of their name.
+ */
+public class PlaceNameIndexTest {
+
+    private final PlaceNameIndex index = PlaceNameIndex.build(Arrays.asList(
+            new PlaceName("1", "Pizza Palace"),
+            new PlaceName("2", "Joe's Pizza"),
+            new PlaceName("3", "Pier 39"),
+            new PlaceName("4", "Coffee Bar"),
+            new PlaceName("5", null)));
+
+    @Test
+    public void findByPrefix_matchesStartOfAnyWord() {
+        assertEquals(Arrays.asList("3", "2", "1"), placeIds(index.findByPrefix("Pi", 10)));
+        assertEquals(Arrays.asList("2", "1"), placeIds(index.findByPrefix("pizza", 10)));
+        assertEquals(Arrays.asList("3"), placeIds(index.findByPrefix("39", 10)));
+        assertEquals(Arrays.asList("2"), placeIds(index.findByPrefix("joe's", 10)));
+    }
+
+    @Test
+    public void findByPrefix_findsEachPlaceOnceUpToLimit() {
+        PlaceNameIndex repeatedWords = PlaceNameIndex.build(Arrays.asList(
+                new PlaceName("1", "Taco Taco"),
+                new PlaceName("2", "Tacos")));
+
+        assertEquals(Arrays.asList("1", "2"), placeIds(repeatedWords.findByPrefix("taco", 10)));
+        assertEquals(1, repeatedWords.findByPrefix("taco", 1).size());
+    }
+
+    @Test
+    public void findByPrefix_noMatchOrEmptyText() {
+        assertTrue(index.findByPrefix("zoo", 10).isEmpty());
+        assertTrue(index.findByPrefix("  ", 10).isEmpty());
+        assertTrue(PlaceNameIndex.EMPTY.findByPrefix("pi", 10).isEmpty());
+    }
+
+    @Test
+    public void containsName_ignoresCaseAndSpaces() {
+        assertTrue(index.containsName(" pizza palace "));
+        assertFalse(index.containsName("pizza"));
+        assertTrue(index.containsPlace("5"));
+        assertFalse(index.containsPlace("6"));
+    }
+
+    private static List<String> placeIds(List<PlaceName> places) {
+        List<String> placeIds = new ArrayList<>();
+        for (PlaceName place : places) {
+            placeIds.add(place.getPlaceId());
+        }
+        return placeIds;
+    }
+}
@@ -0,0 +1,161 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.PlaceNameAndAddress;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which refreshed places RefreshMerge finds changed,
+ * and compares how many Place IDs it reads with searching every saved place for each refreshed place.
+ */
+public class RefreshMergeBenchmarkTest {
+
+    private static final int NUM_PLACES = 10000;
+    // about one in ten places has a new name or address
+    private static final int CHANGED_PLACE_INTERVAL = 10;
+    // the merge reads each saved Place ID once, and each refreshed Place ID once or twice
+    private static final int MAX_PLACE_ID_READS_PER_PLACE = 2;
+
+    @Test
+    public void merge_findsChangedAndUnchangedPlaces() {
+        List<PlaceNameAndAddress> savedPlaces = new ArrayList<>();
+        savedPlaces.add(new PlaceNameAndAddress("a", "Cafe", "1 Main St"));
+        savedPlaces.add(new PlaceNameAndAddress("b", "Park", "2 Main St"));
+        savedPlaces.add(new PlaceNameAndAddress("c", "Museum", null));
+        savedPlaces.add(new PlaceNameAndAddress("d", "Library", "4 Main St"));
+
+        List<PlaceNameAndAddress> refreshedPlaces = new ArrayList<>();
+        refreshedPlaces.add(new PlaceNameAndAddress("a", "Cafe", "1 Main St"));
+        refreshedPlaces.add(new PlaceNameAndAddress("b", "Park", "22 Main St"));
+        refreshedPlaces.add(new PlaceNameAndAddress("c", "Museum", null));
+        refreshedPlaces.add(new PlaceNameAndAddress("d", "City Library", "4 Main St"));
+        // deleted during the refresh
+        refreshedPlaces.add(new PlaceNameAndAddress("e", "Zoo", "5 Main St"));
+
+        RefreshMerge merge = RefreshMerge.of(savedPlaces, refreshedPlaces);
+
+        assertEquals(2, merge.getChangedPlaces().size());
+        assertEquals("b", merge.getChangedPlaces().get(0).getPlaceId());
+        assertEquals("22 Main St", merge.getChangedPlaces().get(0).getAddress());
+        assertEquals("d", merge.getChangedPlaces().get(1).getPlaceId());
+        assertEquals("City Library", merge.getChangedPlaces().get(1).getName());
+        assertEquals(2, merge.getUnchangedPlaceIds().size());
+        assertEquals("a", merge.getUnchangedPlaceIds().get(0));
+        assertEquals("c", merge.getUnchangedPlaceIds().get(1));
+        assertTrue(merge.isSaved("d"));
+        assertFalse(merge.isSaved("e"));
+    }
+
+    @Test
+    public void merge_nullAddressChanged() {
+        List<PlaceNameAndAddress> savedPlaces = Collections.singletonList(
+                new PlaceNameAndAddress("a", "Cafe", null));
+        List<PlaceNameAndAddress> refreshedPlaces = Collections.singletonList(
+                new PlaceNameAndAddress("a", "Cafe", "1 Main St"));
+
+        RefreshMerge merge = RefreshMerge.of(savedPlaces, refreshedPlaces);
+
+        assertEquals(1, merge.getChangedPlaces().size());
+        assertEquals(0, merge.getUnchangedPlaceIds().size());
+    }
+
+    @Test
+    public void merge_readsEachPlaceIdAFewTimesInsteadOfSearchingEveryPlace() {
+        Counter placeIdReads = new Counter();
+        List<PlaceNameAndAddress> savedPlaces = createPlaces(NUM_PLACES, new Random(1), placeIdReads);
+        List<PlaceNameAndAddress> refreshedPlaces = refresh(savedPlaces, new Random(2), placeIdReads);
+
+        placeIdReads.count = 0;
+        List<PlaceNameAndAddress> merged = RefreshMerge.of(savedPlaces, refreshedPlaces).getChangedPlaces();
+        long mergeReads = placeIdReads.count;
+        placeIdReads.count = 0;
+        List<PlaceNameAndAddress> nestedLoopChanged = findChangedWithNestedLoop(savedPlaces, refreshedPlaces);
+        long nestedLoopReads = placeIdReads.count;
+
+        assertEquals(NUM_PLACES / CHANGED_PLACE_INTERVAL, merged.size());
+        assertEquals(nestedLoopChanged.size(), merged.size());
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(nestedLoopChanged.get(i).getPlaceId(), merged.get(i).getPlaceId());
+        }
+        // Counting Place ID reads instead of timing, since a timing
+        // can lose to the nested loop when the machine running the test is busy.
+        assertTrue("merge read " + mergeReads + " Place IDs",
+                mergeReads <= MAX_PLACE_ID_READS_PER_PLACE * (savedPlaces.size() + refreshedPlaces.size()));
+        assertTrue("nested loop read " + nestedLoopReads + " Place IDs",
+                nestedLoopReads > (long) NUM_PLACES * NUM_PLACES / 2);
+    }
+
+    // how the refresh used to match places, searching every saved place for each refreshed place
+    private static List<PlaceNameAndAddress> findChangedWithNestedLoop(
+            List<PlaceNameAndAddress> savedPlaces, List<PlaceNameAndAddress> refreshedPlaces) {
+        List<PlaceNameAndAddress> changedPlaces = new ArrayList<>();
+        for (PlaceNameAndAddress refreshedPlace : refreshedPlaces) {
+            for (PlaceNameAndAddress savedPlace : savedPlaces) {
+                if (savedPlace.getPlaceId().equals(refreshedPlace.getPlaceId())) {
+                    if (!savedPlace.getName().equals(refreshedPlace.getName())
+                            || !savedPlace.getAddress().equals(refreshedPlace.getAddress())) {
+                        changedPlaces.add(refreshedPlace);
+                    }
+                    break;
+                }
+            }
+        }
+        return changedPlaces;
+    }
+
+    // places with random Place IDs like the Places API's
+    private static List<PlaceNameAndAddress> createPlaces(int count, Random random, Counter placeIdReads) {
+        List<PlaceNameAndAddress> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String placeId = "ChIJ" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + i;
+            places.add(new CountedPlace(placeId, "Place " + i, i + " Main St", placeIdReads));
+        }
+        return places;
+    }
+
+    // the same places in a random order, with every CHANGED_PLACE_INTERVAL-th place renamed
+    private static List<PlaceNameAndAddress> refresh(List<PlaceNameAndAddress> savedPlaces, Random random,
+                                                     Counter placeIdReads) {
+        List<PlaceNameAndAddress> refreshedPlaces = new ArrayList<>(savedPlaces.size());
+        for (int i = 0; i < savedPlaces.size(); i++) {
+            PlaceNameAndAddress savedPlace = savedPlaces.get(i);
+            String name = i % CHANGED_PLACE_INTERVAL == 0 ? savedPlace.getName() + " (new)" : savedPlace.getName();
+            refreshedPlaces.add(new CountedPlace(savedPlace.getPlaceId(), name, savedPlace.getAddress(),
+                    placeIdReads));
+        }
+        Collections.shuffle(refreshedPlaces, random);
+        return refreshedPlaces;
+    }
+
+    private static final class Counter {
+        private long count;
+    }
+
+    // a place that counts how many times its Place ID is read
+    private static final class CountedPlace extends PlaceNameAndAddress {
+        private final Counter placeIdReads;
+
+        CountedPlace(String placeId, String name, String address, Counter placeIdReads) {
+            super(placeId, name, address);
+            this.placeIdReads = placeIdReads;
+        }
+
+        @NonNull
+        @Override
+        public String getPlaceId() {
+            placeIdReads.count++;
+            return super.getPlaceId();
+        }
+    }
+}
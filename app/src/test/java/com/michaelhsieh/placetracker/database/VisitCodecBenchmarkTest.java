@@ -0,0 +1,97 @@
+package com.michaelhsieh.placetracker.database;
+
+import com.michaelhsieh.placetracker.models.expandablegroup.Visit;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that VisitCodec round-trips visits and still reads the legacy Gson JSON,
+ * and that the binary format is smaller than the JSON.
+ */
+public class VisitCodecBenchmarkTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NUM_VISITS = 1000;
+
+    @Test
+    public void binary_roundTripKeepsTimeZoneAndId() {
+        List<Visit> visits = createVisits(NUM_VISITS, new String[] {"America/Los_Angeles", "Asia/Tokyo", "UTC"});
+
+        List<Visit> decoded = VisitCodec.decode(VisitCodec.encode(visits));
+
+        assertEquals(visits.size(), decoded.size());
+        for (int i = 0; i < visits.size(); i++) {
+            assertEquals(visits.get(i).getVisitedAt(), decoded.get(i).getVisitedAt());
+            assertEquals(visits.get(i).getTimeZone(), decoded.get(i).getTimeZone());
+            assertEquals(visits.get(i).getId(), decoded.get(i).getId());
+        }
+    }
+
+    @Test
+    public void binary_emptyListAndNull() {
+        assertEquals(0, VisitCodec.decode(VisitCodec.encode(new ArrayList<Visit>())).size());
+        assertEquals(0, VisitCodec.decode(null).size());
+    }
+
+    @Test
+    public void decode_acceptsLegacyJson() {
+        // Gson saved a Calendar's fields without its time zone, so it's read in the default time zone
+        List<Visit> visits = createVisits(10, new String[] {TimeZone.getDefault().getID()});
+        String json = VisitCodec.encodeLegacyJson(visits);
+
+        List<Visit> decoded = VisitCodec.decode(json.getBytes(UTF_8));
+
+        assertEquals(visits.size(), decoded.size());
+        for (int i = 0; i < visits.size(); i++) {
+            assertEquals(visits.get(i).getVisitedAt(), decoded.get(i).getVisitedAt());
+        }
+        assertEquals(0, VisitCodec.decodeLegacyJson("null").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_truncatedBinaryThrows() {
+        byte[] encoded = VisitCodec.encode(createVisits(5, new String[] {"UTC"}));
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        VisitCodec.decode(truncated);
+    }
+
+    @Test
+    public void binary_smallerThanGson() {
+        List<Visit> visits = createVisits(NUM_VISITS, new String[] {"America/Los_Angeles", "America/New_York"});
+
+        byte[] binary = VisitCodec.encode(visits);
+        byte[] json = VisitCodec.encodeLegacyJson(visits).getBytes(UTF_8);
+
+        assertEquals(visits.size(), VisitCodec.decode(binary).size());
+        assertEquals(visits.size(), VisitCodec.decode(json).size());
+        assertTrue("binary visits are " + binary.length + " bytes, JSON is " + json.length,
+                binary.length < json.length);
+    }
+
+    // visits a few days apart, in random order, at whole seconds since Gson doesn't save milliseconds
+    private static List<Visit> createVisits(int count, String[] zoneIds) {
+        Random random = new Random(42);
+        long start = 1577836800000L; // January 1, 2020 UTC
+        List<Visit> visits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(zoneIds[i % zoneIds.length]));
+            calendar.setTimeInMillis(start + random.nextInt(3 * 365 * 24 * 60 * 60) * 1000L);
+            Visit visit = new Visit(calendar);
+            visit.setId(i + 1);
+            visits.add(visit);
+        }
+        return visits;
+    }
+}
@@ -0,0 +1,31 @@
+package com.michaelhsieh.placetracker.photo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks that photos are decoded at the smallest power of 2 fraction of their size
+ * that still fills the ImageView.
+ */
+public class PhotoLoaderTest {
+
+    @Test
+    public void calculateInSampleSize_keepsPhotoAtLeastTargetSize() {
+        assertEquals(1, PhotoLoader.calculateInSampleSize(300, 300, 300, 300));
+        assertEquals(1, PhotoLoader.calculateInSampleSize(599, 599, 300, 300));
+        assertEquals(2, PhotoLoader.calculateInSampleSize(600, 600, 300, 300));
+        assertEquals(8, PhotoLoader.calculateInSampleSize(4032, 3024, 300, 300));
+    }
+
+    @Test
+    public void calculateInSampleSize_limitedBySmallerSide() {
+        // a wide photo is scaled down until its height is about the target height
+        assertEquals(2, PhotoLoader.calculateInSampleSize(4000, 700, 300, 300));
+    }
+
+    @Test
+    public void calculateInSampleSize_smallPhotoOrNoTargetSize() {
+        assertEquals(1, PhotoLoader.calculateInSampleSize(100, 100, 300, 300));
+        assertEquals(1, PhotoLoader.calculateInSampleSize(4000, 3000, 0, 0));
+    }
+}
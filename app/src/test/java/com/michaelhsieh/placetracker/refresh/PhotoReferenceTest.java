@@ -0,0 +1,38 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class PhotoReferenceTest {
+
+    @Test
+    public void of_samePhotoSameReference() {
+        assertEquals(PhotoReference.of(createMetadata("photo_a", "Jane Doe")),
+                PhotoReference.of(createMetadata("photo_a", "Jane Doe")));
+    }
+
+    @Test
+    public void of_photosWithSameAttributionsAndSizeHaveDifferentReferences() {
+        // ex. two photos taken by the same person with the same camera
+        assertNotEquals(PhotoReference.of(createMetadata("photo_a", "Jane Doe")),
+                PhotoReference.of(createMetadata("photo_b", "Jane Doe")));
+    }
+
+    @Test
+    public void of_differentAttributionsDifferentReferences() {
+        assertNotEquals(PhotoReference.of(createMetadata("photo_a", "Jane Doe")),
+                PhotoReference.of(createMetadata("photo_a", "John Doe")));
+    }
+
+    private static PhotoMetadata createMetadata(String photoReference, String attributions) {
+        return PhotoMetadata.builder(photoReference)
+                .setAttributions(attributions)
+                .setWidth(4032)
+                .setHeight(3024)
+                .build();
+    }
+}
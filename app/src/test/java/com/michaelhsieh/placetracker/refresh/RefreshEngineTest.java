@@ -0,0 +1,394 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.libraries.places.api.net.PlacesStatusCodes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that a refresh sends a limited number of requests at once, retries temporary errors,
+ * and gives every place exactly one outcome, on a fake clock instead of the Places SDK.
+ */
+public class RefreshEngineTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void start_neverSendsMoreThanMaxInFlight() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 3);
+
+        engine.start(placeIds(10), listener);
+        assertEquals(3, fetcher.waiting.size());
+
+        // each answer lets one more request be sent
+        while (!fetcher.waiting.isEmpty()) {
+            fetcher.succeedNext();
+            assertTrue(fetcher.waiting.size() <= 3);
+        }
+        assertEquals(10, fetcher.requestCount);
+        assertEquals(1, listener.finishedCount);
+        assertEquals(10, listener.outcomes.size());
+    }
+
+    @Test
+    public void start_retriesTemporaryErrorsWithBackoff() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        engine.start(placeIds(1), listener);
+        fetcher.failNext(new TimeoutException());
+        // nothing is sent until the backoff has passed
+        assertTrue(fetcher.waiting.isEmpty());
+        scheduler.runNext();
+        fetcher.failNext(new TimeoutException());
+        scheduler.runNext();
+        fetcher.succeedNext();
+
+        RefreshEngine.Outcome<String> outcome = listener.outcomes.get(0);
+        assertEquals(RefreshEngine.Outcome.Status.REFRESHED, outcome.getStatus());
+        assertEquals(3, outcome.getAttempts());
+        assertEquals(1, listener.finishedCount);
+    }
+
+    @Test
+    public void start_permanentErrorFailsWithoutRetry() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        engine.start(placeIds(1), listener);
+        fetcher.failNext(new IllegalArgumentException("not a Place ID"));
+
+        RefreshEngine.Outcome<String> outcome = listener.outcomes.get(0);
+        assertEquals(RefreshEngine.Outcome.Status.FAILED, outcome.getStatus());
+        assertEquals(1, outcome.getAttempts());
+        assertNull(outcome.getResult());
+        assertEquals(1, listener.finishedCount);
+    }
+
+    @Test
+    public void start_givesUpAfterMaxAttempts() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        // requests that never answer time out and are retried
+        engine.start(placeIds(1), listener);
+        scheduler.runAll();
+
+        RefreshEngine.Outcome<String> outcome = listener.outcomes.get(0);
+        assertEquals(RefreshEngine.Outcome.Status.GAVE_UP, outcome.getStatus());
+        assertEquals(4, outcome.getAttempts());
+        assertEquals(4, fetcher.requestCount);
+        assertFalse(engine.isRunning());
+    }
+
+    @Test
+    public void start_ignoresLateAndRepeatedAnswers() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        engine.start(placeIds(1), listener);
+        RefreshEngine.FetchCallback<String> firstAttempt = fetcher.waiting.get(0).callback;
+        // the first attempt times out, then its retry is sent
+        scheduler.runNext();
+        scheduler.runNext();
+        firstAttempt.onSuccess("late");
+        assertTrue(listener.outcomes.isEmpty());
+
+        RefreshEngine.FetchCallback<String> secondAttempt = fetcher.waiting.get(1).callback;
+        secondAttempt.onSuccess("refreshed");
+        secondAttempt.onSuccess("again");
+        secondAttempt.onFailure(new TimeoutException());
+
+        assertEquals(1, listener.outcomes.size());
+        assertEquals("refreshed", listener.outcomes.get(0).getResult());
+        assertEquals(1, listener.finishedCount);
+    }
+
+    @Test
+    public void start_slowSaveDoesNotTimeOut() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        engine.start(placeIds(2), listener);
+        RefreshEngine.FetchCallback<String> callback = fetcher.waiting.get(0).callback;
+        callback.onFetched();
+        // the timeout passes while the place is being saved
+        scheduler.runAll();
+        assertEquals(1, fetcher.requestCount);
+        assertTrue(listener.outcomes.isEmpty());
+
+        callback.onSuccess("saved");
+
+        assertEquals(1, listener.outcomes.size());
+        assertEquals(RefreshEngine.Outcome.Status.REFRESHED, listener.outcomes.get(0).getStatus());
+        assertEquals(1, listener.outcomes.get(0).getAttempts());
+        // the second place is sent once the first is saved
+        assertEquals(2, fetcher.requestCount);
+    }
+
+    @Test
+    public void start_failedSaveIsRetriedThenGivenUp() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 1);
+
+        engine.start(placeIds(2), listener);
+        for (int attempt = 1; attempt <= 4; attempt++) {
+            RefreshEngine.FetchCallback<String> callback = fetcher.waiting.remove(0).callback;
+            callback.onFetched();
+            // the timeout passes while the place is being saved, then saving fails
+            scheduler.runNext();
+            callback.onFailure(new RefreshFetcher.SaveException(new RuntimeException("disk full")));
+            if (attempt < 4) {
+                assertTrue(listener.outcomes.isEmpty());
+                // the place is fetched again after the backoff
+                scheduler.runNext();
+            }
+        }
+
+        // the place didn't stay in flight, so the next place was sent
+        assertEquals(1, listener.outcomes.size());
+        assertEquals(RefreshEngine.Outcome.Status.GAVE_UP, listener.outcomes.get(0).getStatus());
+        assertEquals(4, listener.outcomes.get(0).getAttempts());
+        assertEquals(5, fetcher.requestCount);
+        fetcher.succeedNext();
+        assertEquals(RefreshEngine.Outcome.Status.REFRESHED, listener.outcomes.get(1).getStatus());
+        assertEquals(1, listener.finishedCount);
+    }
+
+    @Test
+    public void start_thousandsOfPlacesFinishOnceWithOneOutcomeEach() {
+        // every 7th place fails for good, every 3rd fails once first, every 11th never answers
+        final Map<String, Integer> attempts = new HashMap<>();
+        final FakeScheduler scheduler = new FakeScheduler();
+        RefreshEngine.Fetcher<String> fetcher = new RefreshEngine.Fetcher<String>() {
+            @Override
+            public void fetch(String placeId, RefreshEngine.FetchCallback<String> callback) {
+                int index = Integer.parseInt(placeId.substring(1));
+                Integer previous = attempts.get(placeId);
+                int attempt = previous == null ? 1 : previous + 1;
+                attempts.put(placeId, attempt);
+                if (index % 7 == 0) {
+                    callback.onFailure(new IllegalArgumentException());
+                } else if (index % 11 == 0) {
+                    return;
+                } else if (index % 3 == 0 && attempt == 1) {
+                    callback.onFailure(new TimeoutException());
+                } else {
+                    callback.onSuccess(placeId);
+                }
+            }
+        };
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 8);
+
+        List<String> placeIds = placeIds(2000);
+        // a place listed twice is only refreshed once
+        placeIds.add("p5");
+        engine.start(placeIds, listener);
+        scheduler.runAll();
+
+        assertEquals(1, listener.finishedCount);
+        assertEquals(2000, listener.outcomes.size());
+        int refreshed = 0;
+        for (RefreshEngine.Outcome<String> outcome : listener.outcomes) {
+            if (outcome.getStatus() == RefreshEngine.Outcome.Status.REFRESHED) {
+                refreshed++;
+            }
+        }
+        int expected = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (i % 7 != 0 && i % 11 != 0) {
+                expected++;
+            }
+        }
+        assertEquals(expected, refreshed);
+        assertEquals(Integer.valueOf(1), attempts.get("p5"));
+    }
+
+    @Test
+    public void start_emptyListFinishesRightAway() {
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(new FakeFetcher(), new FakeScheduler(), 8);
+
+        engine.start(new ArrayList<String>(), listener);
+
+        assertEquals(1, listener.finishedCount);
+        assertTrue(listener.outcomes.isEmpty());
+    }
+
+    @Test
+    public void cancel_stopsRequestsAndListener() {
+        FakeFetcher fetcher = new FakeFetcher();
+        FakeScheduler scheduler = new FakeScheduler();
+        RecordingListener listener = new RecordingListener();
+        RefreshEngine<String> engine = createEngine(fetcher, scheduler, 2);
+
+        engine.start(placeIds(5), listener);
+        engine.cancel();
+        fetcher.succeedNext();
+        scheduler.runAll();
+
+        assertEquals(2, fetcher.requestCount);
+        assertTrue(listener.outcomes.isEmpty());
+        assertEquals(0, listener.finishedCount);
+    }
+
+    @Test
+    public void isTransientStatus_onlyTemporaryErrors() {
+        assertTrue(RetryPolicy.isTransientStatus(CommonStatusCodes.NETWORK_ERROR));
+        assertTrue(RetryPolicy.isTransientStatus(CommonStatusCodes.TIMEOUT));
+        assertTrue(RetryPolicy.isTransientStatus(PlacesStatusCodes.OVER_QUERY_LIMIT));
+        assertFalse(RetryPolicy.isTransientStatus(PlacesStatusCodes.REQUEST_DENIED));
+        assertFalse(RetryPolicy.isTransientStatus(PlacesStatusCodes.INVALID_REQUEST));
+    }
+
+    @Test
+    public void getDelayMillis_doublesUpToMaxWithJitter() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000);
+        Random random = new Random(1);
+        long[] backoffs = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= backoffs.length; attempt++) {
+            for (int i = 0; i < 100; i++) {
+                long delay = retryPolicy.getDelayMillis(attempt, random);
+                long backoff = backoffs[attempt - 1];
+                assertTrue(delay >= backoff / 2 && delay <= backoff);
+            }
+        }
+    }
+
+    private static RefreshEngine<String> createEngine(RefreshEngine.Fetcher<String> fetcher,
+                                                      FakeScheduler scheduler, int maxInFlight) {
+        return new RefreshEngine<>(fetcher, scheduler, new RetryPolicy(4, 500, 8000),
+                maxInFlight, TIMEOUT_MILLIS, new Random(0));
+    }
+
+    private static List<String> placeIds(int count) {
+        List<String> placeIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            placeIds.add("p" + i);
+        }
+        return placeIds;
+    }
+
+    /** Keeps each request until the test answers it.
+     *
+     */
+    private static class FakeFetcher implements RefreshEngine.Fetcher<String> {
+        private final List<Request> waiting = new ArrayList<>();
+        private int requestCount = 0;
+
+        @Override
+        public void fetch(String placeId, RefreshEngine.FetchCallback<String> callback) {
+            requestCount++;
+            waiting.add(new Request(placeId, callback));
+        }
+
+        void succeedNext() {
+            Request request = waiting.remove(0);
+            request.callback.onSuccess(request.placeId);
+        }
+
+        void failNext(Exception exception) {
+            waiting.remove(0).callback.onFailure(exception);
+        }
+    }
+
+    private static class Request {
+        private final String placeId;
+        private final RefreshEngine.FetchCallback<String> callback;
+
+        Request(String placeId, RefreshEngine.FetchCallback<String> callback) {
+            this.placeId = placeId;
+            this.callback = callback;
+        }
+    }
+
+    /** Runs scheduled tasks in time order on a fake clock, skipping the waits.
+     *
+     */
+    private static class FakeScheduler implements RefreshEngine.Scheduler {
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long now = 0;
+        private long sequence = 0;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(new Task(now + delayMillis, sequence++, task));
+        }
+
+        void runNext() {
+            Task task = tasks.poll();
+            now = task.time;
+            task.runnable.run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private static class Task implements Comparable<Task> {
+        private final long time;
+        private final long sequence;
+        private final Runnable runnable;
+
+        Task(long time, long sequence, Runnable runnable) {
+            this.time = time;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class RecordingListener implements RefreshEngine.Listener<String> {
+        private final List<RefreshEngine.Outcome<String>> outcomes = new ArrayList<>();
+        private int finishedCount = 0;
+
+        @Override
+        public void onItemFinished(RefreshEngine.Outcome<String> outcome) {
+            outcomes.add(outcome);
+        }
+
+        @Override
+        public void onFinished(List<RefreshEngine.Outcome<String>> finishedOutcomes) {
+            finishedCount++;
+            assertEquals(outcomes.size(), finishedOutcomes.size());
+        }
+    }
+}
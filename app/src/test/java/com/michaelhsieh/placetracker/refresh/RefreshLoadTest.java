@@ -0,0 +1,202 @@
+package com.michaelhsieh.placetracker.refresh;
+
+import android.graphics.Bitmap;
+
+import com.google.android.libraries.places.api.model.AutocompletePrediction;
+import com.google.android.libraries.places.api.model.AutocompleteSessionToken;
+import com.google.android.libraries.places.api.model.PhotoMetadata;
+import com.google.android.libraries.places.api.model.Place;
+import com.michaelhsieh.placetracker.places.FakePlacesGateway;
+import com.michaelhsieh.placetracker.places.PlacesGateway;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Refreshes thousands of places against FakePlacesGateway on a fake clock,
+ * to check the refresh finishes every place despite errors and only fetches changed photos.
+ */
+public class RefreshLoadTest {
+
+    private static final int NUM_PLACES = 10000;
+    private static final int MAX_IN_FLIGHT = 8;
+    private static final long TIMEOUT_MILLIS = 15000;
+    private static final long MIN_LATENCY_MILLIS = 50;
+    private static final long MAX_LATENCY_MILLIS = 1500;
+    private static final double ERROR_RATE = 0.1;
+    // time the database takes to save a place
+    private static final long SAVE_MILLIS = 5;
+    private static final int NUM_PHOTOS = 4;
+    private static final int MAX_PHOTO_SIZE = 800;
+
+    @Test
+    public void refresh_finishesEveryPlaceDespiteErrors() {
+        LoadRun run = new LoadRun(Collections.<String, String>emptyMap(), 1);
+
+        assertEquals(NUM_PLACES, run.outcomes.size());
+        int refreshedCount = run.count(RefreshEngine.Outcome.Status.REFRESHED);
+        int gaveUpCount = run.count(RefreshEngine.Outcome.Status.GAVE_UP);
+        // every error is temporary, so no place fails for good
+        assertEquals(NUM_PLACES, refreshedCount + gaveUpCount);
+        assertTrue("too many places given up: " + gaveUpCount, gaveUpCount < NUM_PLACES / 100);
+        assertEquals(refreshedCount, run.savedPhotoReferences.size());
+        // errors were retried
+        assertTrue(run.placeRequestCount > NUM_PLACES);
+    }
+
+    @Test
+    public void refresh_sameSeedSameOutcomes() {
+        LoadRun run = new LoadRun(Collections.<String, String>emptyMap(), 2);
+        LoadRun sameRun = new LoadRun(Collections.<String, String>emptyMap(), 2);
+
+        assertEquals(run.finishedAt, sameRun.finishedAt);
+        assertEquals(run.placeRequestCount, sameRun.placeRequestCount);
+        for (int i = 0; i < run.outcomes.size(); i++) {
+            assertEquals(run.outcomes.get(i).getPlaceId(), sameRun.outcomes.get(i).getPlaceId());
+            assertEquals(run.outcomes.get(i).getStatus(), sameRun.outcomes.get(i).getStatus());
+            assertEquals(run.outcomes.get(i).getAttempts(), sameRun.outcomes.get(i).getAttempts());
+        }
+    }
+
+    @Test
+    public void refresh_savedPhotosAreNotFetchedAgain() {
+        LoadRun firstRun = new LoadRun(Collections.<String, String>emptyMap(), 3);
+        assertTrue(firstRun.photoRequestCount >= firstRun.savedPhotoReferences.size());
+
+        LoadRun secondRun = new LoadRun(firstRun.savedPhotoReferences, 4);
+
+        // only places given up in the first run have a photo to fetch
+        int gaveUpCount = firstRun.count(RefreshEngine.Outcome.Status.GAVE_UP);
+        assertTrue(secondRun.photoRequestCount <= gaveUpCount * new RetryPolicy().getMaxAttempts());
+        assertTrue(secondRun.finishedAt < firstRun.finishedAt);
+    }
+
+    // one refresh of NUM_PLACES places, run to the end on a fake clock
+    private static class LoadRun {
+        private final List<RefreshEngine.Outcome<Place>> outcomes = new ArrayList<>();
+        // the reference of the photo saved with each place
+        private final Map<String, String> savedPhotoReferences = new HashMap<>();
+        private int placeRequestCount = 0;
+        private int photoRequestCount = 0;
+        private long finishedAt;
+
+        LoadRun(Map<String, String> photoReferences, long seed) {
+            final FakeScheduler scheduler = new FakeScheduler();
+            // Bitmaps can't be created in JVM tests, so the canned photos are null
+            List<Bitmap> cannedPhotos = Collections.nCopies(NUM_PHOTOS, (Bitmap) null);
+            final FakePlacesGateway fakeGateway = new FakePlacesGateway(scheduler, MIN_LATENCY_MILLIS,
+                    MAX_LATENCY_MILLIS, ERROR_RATE, cannedPhotos, seed);
+
+            PlacesGateway countingGateway = new PlacesGateway() {
+                @Override
+                public void fetchPlace(String placeId, List<Place.Field> fields,
+                                       AutocompleteSessionToken sessionToken, Callback<Place> callback) {
+                    placeRequestCount++;
+                    fakeGateway.fetchPlace(placeId, fields, sessionToken, callback);
+                }
+
+                @Override
+                public void fetchPhoto(PhotoMetadata photoMetadata, int maxWidth, int maxHeight,
+                                       Callback<Bitmap> callback) {
+                    photoRequestCount++;
+                    fakeGateway.fetchPhoto(photoMetadata, maxWidth, maxHeight, callback);
+                }
+
+                @Override
+                public void findAutocompletePredictions(String query, AutocompleteSessionToken sessionToken,
+                                                        Callback<List<AutocompletePrediction>> callback) {
+                    fakeGateway.findAutocompletePredictions(query, sessionToken, callback);
+                }
+            };
+
+            RefreshFetcher fetcher = new RefreshFetcher(countingGateway, photoReferences, new RetryPolicy(),
+                    MAX_PHOTO_SIZE, MAX_PHOTO_SIZE,
+                    (placeId, place, photo, attributions, photoReference, callback) -> {
+                        if (photoReference != null) {
+                            savedPhotoReferences.put(placeId, photoReference);
+                        }
+                        scheduler.schedule(callback::onSaved, SAVE_MILLIS);
+                    });
+            RefreshEngine<Place> engine = new RefreshEngine<>(fetcher, scheduler, new RetryPolicy(),
+                    MAX_IN_FLIGHT, TIMEOUT_MILLIS, new Random(seed));
+            engine.start(placeIds(), new RefreshEngine.Listener<Place>() {
+                @Override
+                public void onItemFinished(RefreshEngine.Outcome<Place> outcome) {
+                    outcomes.add(outcome);
+                }
+
+                @Override
+                public void onFinished(List<RefreshEngine.Outcome<Place>> allOutcomes) {
+                    finishedAt = scheduler.now;
+                }
+            });
+            scheduler.runAll();
+        }
+
+        int count(RefreshEngine.Outcome.Status status) {
+            int count = 0;
+            for (RefreshEngine.Outcome<Place> outcome : outcomes) {
+                if (outcome.getStatus() == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static List<String> placeIds() {
+        List<String> placeIds = new ArrayList<>(NUM_PLACES);
+        for (int i = 0; i < NUM_PLACES; i++) {
+            placeIds.add("ChIJ_place_" + i);
+        }
+        return placeIds;
+    }
+
+    private static class FakeScheduler implements RefreshEngine.Scheduler {
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long now = 0;
+        private long sequence = 0;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(new Task(now + delayMillis, sequence++, task));
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                Task task = tasks.poll();
+                now = task.time;
+                task.runnable.run();
+            }
+        }
+    }
+
+    private static class Task implements Comparable<Task> {
+        private final long time;
+        private final long sequence;
+        private final Runnable runnable;
+
+        Task(long time, long sequence, Runnable runnable) {
+            this.time = time;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}